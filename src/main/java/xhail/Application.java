@@ -62,6 +62,13 @@ public class Application implements Callable<Answers> {
 					case "--blind":
 						builder.setBlind(true);
 						break;
+					case "-C":
+					case "--cap":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setCap(args[++i]);
+						break;
 					case "-c":
 					case "--clasp":
 						if (args.length - i <= 1)
@@ -73,6 +80,24 @@ public class Application implements Callable<Answers> {
 					case "--debug":
 						builder.setDebug(true);
 						break;
+					case "-D":
+					case "--depth":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setDepth(args[++i]);
+						break;
+					case "-e":
+					case "--facts":
+						builder.setFacts(true);
+						break;
+					case "-F":
+					case "--fit":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setFit(args[++i]);
+						break;
 					case "-f":
 					case "--full":
 						builder.setFull(true);
@@ -95,6 +120,13 @@ public class Application implements Callable<Answers> {
 						else
 							builder.setIterations(args[++i]);
 						break;
+					case "-j":
+					case "--jobs":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setJobs(args[++i]);
+						break;
 					case "-k":
 					case "--kill":
 						if (args.length - i <= 1)
@@ -102,10 +134,24 @@ public class Application implements Callable<Answers> {
 						else
 							builder.setKill(args[++i]);
 						break;
+					case "-L":
+					case "--literals":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setLiterals(args[++i]);
+						break;
 					case "-m":
 					case "--mute":
 						builder.setMute(true);
 						break;
+					case "-n":
+					case "--enumerate":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setEnumerate(args[++i]);
+						break;
 					case "-o":
 					case "--output":
 						builder.setOutput(true);
@@ -128,6 +174,13 @@ public class Application implements Callable<Answers> {
 						// }
 						// }
 						break;
+					case "-S":
+					case "--scratch":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setScratch(args[++i]);
+						break;
 					case "-s":
 					case "--search":
 						builder.setSearch(true);
@@ -143,10 +196,25 @@ public class Application implements Callable<Answers> {
 						else
 							builder.setBudget(args[++i]);
 						break;
+					case "-u":
+					case "--unsliced":
+						builder.setUnsliced(true);
+						break;
 					case "-v":
 					case "--version":
 						builder.setVersion(true);
 						break;
+					case "-W":
+					case "--width":
+						if (args.length - i <= 1)
+							builder.missingParameter();
+						else
+							builder.setWidth(args[++i]);
+						break;
+					case "-x":
+					case "--compact":
+						builder.setCompact(true);
+						break;
 					case "-P":
 					case "--prune":
 						if (args.length - i <= 1)
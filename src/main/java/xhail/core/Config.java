@@ -18,25 +18,38 @@ public class Config {
 
 		private boolean all = false;
 		private boolean blind = false;
+		private long cap = 0L;
 		private Path clasp = null;
+		private boolean compact = false;
 		private boolean debug = false;
+		private int depth = 0;
+		private int enumerate = 0;
 		String errors = "";
+		private boolean facts = false;
+		private long fit = 0L;
+		private boolean fitLiterals = false;
 		private boolean full = false;
 		private Path gringo = null;
 		private boolean help = false;
 		private int iterations = 0;
+		private int jobs = 0;
 		private long kill = 0L;
+		private int literals = 0;
 		private long budget = 0L;
 		private long prune = 0L;
 		private boolean mute = false;
+		private Path scratch = null;
 		private boolean output = false;
 		private boolean prettify = false;
 		private boolean search = false;
 		private LinkedHashSet<Path> sources = new LinkedHashSet<>();
 		private boolean terminate = false;
+		private boolean unsliced = false;
 
 		private boolean version = false;
 
+		private int width = 0;
+
 		public Builder addSource(String source) {
 			if (null == source)
 				throw new IllegalArgumentException("Illegal 'source' argument in Application.Builder.addSource(Path): " + source);
@@ -84,6 +97,15 @@ public class Config {
 			return this;
 		}
 
+		public Builder setCap(String cap) {
+			try {
+				this.cap = Long.parseUnsignedLong(cap);
+			} catch (NullPointerException | NumberFormatException e) {
+				errors += String.format("  '%s' is not a valid number of atoms\n", cap);
+			}
+			return this;
+		}
+
 		public Builder setClasp(String clasp) {
 			if (null == clasp || (clasp = clasp.trim()).isEmpty())
 				throw new IllegalArgumentException("Illegal 'clasp' argument in Application.Builder.setClasp(String): " + clasp);
@@ -91,11 +113,49 @@ public class Config {
 			return this;
 		}
 
+		public Builder setCompact(boolean compact) {
+			this.compact = compact;
+			return this;
+		}
+
 		public Builder setDebug(boolean debug) {
 			this.debug = debug;
 			return this;
 		}
 
+		public Builder setDepth(String depth) {
+			try {
+				this.depth = Integer.parseUnsignedInt(depth);
+			} catch (NullPointerException | NumberFormatException e) {
+				errors += String.format("  '%s' is not a valid number of levels\n", depth);
+			}
+			return this;
+		}
+
+		public Builder setEnumerate(String enumerate) {
+			try {
+				this.enumerate = Integer.parseUnsignedInt(enumerate);
+			} catch (NullPointerException | NumberFormatException e) {
+				errors += String.format("  '%s' is not a valid number of models\n", enumerate);
+			}
+			return this;
+		}
+
+		public Builder setFacts(boolean facts) {
+			this.facts = facts;
+			return this;
+		}
+
+		public Builder setFit(String fit) {
+			try {
+				this.fitLiterals = fit.endsWith("l");
+				this.fit = Long.parseUnsignedLong(fitLiterals ? fit.substring(0, fit.length() - 1) : fit);
+			} catch (NullPointerException | NumberFormatException e) {
+				errors += String.format("  '%s' is not a valid number of clauses or literals\n", fit);
+			}
+			return this;
+		}
+
 		public Builder setFull(boolean full) {
 			this.full = full;
 			return this;
@@ -122,6 +182,15 @@ public class Config {
 			return this;
 		}
 
+		public Builder setJobs(String jobs) {
+			try {
+				this.jobs = Integer.parseUnsignedInt(jobs);
+			} catch (NullPointerException | NumberFormatException e) {
+				errors += String.format("  '%s' is not a valid number of threads\n", jobs);
+			}
+			return this;
+		}
+
 		public Builder setKill(String kill) {
 			try {
 				this.kill = Long.parseUnsignedLong(kill);
@@ -149,6 +218,15 @@ public class Config {
 			return this;
 		}
 
+		public Builder setLiterals(String literals) {
+			try {
+				this.literals = Integer.parseUnsignedInt(literals);
+			} catch (NullPointerException | NumberFormatException e) {
+				errors += String.format("  '%s' is not a valid number of literals\n", literals);
+			}
+			return this;
+		}
+
 		public Builder setMute(boolean mute) {
 			this.mute = mute;
 			return this;
@@ -164,6 +242,17 @@ public class Config {
 			return this;
 		}
 
+		public Builder setScratch(String scratch) {
+			if (null == scratch || (scratch = scratch.trim()).isEmpty())
+				throw new IllegalArgumentException("Illegal 'scratch' argument in Application.Builder.setScratch(String): " + scratch);
+			Path temp = Paths.get(scratch);
+			if (Files.isDirectory(temp) && Files.isWritable(temp))
+				this.scratch = temp;
+			else
+				errors += String.format("  directory '%s' cannot be written\n", scratch);
+			return this;
+		}
+
 		public Builder setSearch(boolean search) {
 			this.search = search;
 			return this;
@@ -174,21 +263,49 @@ public class Config {
 			return this;
 		}
 
+		public Builder setUnsliced(boolean unsliced) {
+			this.unsliced = unsliced;
+			return this;
+		}
+
 		public Builder setVersion(boolean version) {
 			this.version = version;
 			return this;
 		}
 
+		public Builder setWidth(String width) {
+			try {
+				this.width = Integer.parseUnsignedInt(width);
+			} catch (NullPointerException | NumberFormatException e) {
+				errors += String.format("  '%s' is not a valid number of terms\n", width);
+			}
+			return this;
+		}
+
 	}
 
 	private final boolean all;
 
 	private final boolean blind;
 
+	private final long cap;
+
 	private Path clasp;
 
+	private final boolean compact;
+
 	private final boolean debug;
 
+	private final int depth;
+
+	private final int enumerate;
+
+	private final boolean facts;
+
+	private final long fit;
+
+	private final boolean fitLiterals;
+
 	private final boolean full;
 
 	private Path gringo;
@@ -197,7 +314,11 @@ public class Config {
 
 	private final int iterations;
 
+	private final int jobs;
+
 	private final long kill;
+
+	private final int literals;
   
 	private final long budget;
 
@@ -211,26 +332,41 @@ public class Config {
 
 	private final boolean prettify;
 
+	private final Path scratch;
+
 	private final boolean search;
 
 	private final Path[] sources;
 
 	private final boolean terminate;
 
+	private final boolean unsliced;
+
 	private final boolean version;
 
+	private final int width;
+
 	private Config(Builder builder) {
 		if (null == builder)
 			throw new IllegalArgumentException("Illegal 'builder' argument in Application(Application.Builder): " + builder);
 		this.all = builder.all;
 		this.blind = builder.blind;
+		this.cap = builder.cap;
 		this.clasp = builder.clasp;
+		this.compact = builder.compact;
 		this.debug = builder.debug;
+		this.depth = builder.depth;
+		this.enumerate = builder.enumerate;
+		this.facts = builder.facts;
+		this.fit = builder.fit;
+		this.fitLiterals = builder.fitLiterals;
 		this.full = builder.full;
 		this.gringo = builder.gringo;
 		this.iterations = builder.iterations;
 		this.help = builder.help;
+		this.jobs = builder.jobs;
 		this.kill = builder.kill;
+		this.literals = builder.literals;
 		this.budget = builder.budget;
 		this.prune = builder.prune;
 		String name = "stdin";
@@ -246,16 +382,43 @@ public class Config {
 		this.name = name;
 		this.output = builder.output;
 		this.prettify = builder.prettify;
+		this.scratch = builder.scratch;
 		this.search = builder.search;
 		this.sources = builder.sources.toArray(new Path[builder.sources.size()]);
 		this.terminate = builder.terminate;
+		this.unsliced = builder.unsliced;
 		this.version = builder.version;
+		this.width = builder.width;
+	}
+
+	public final long getCap() {
+		return cap;
 	}
 
 	public Path getClasp() {
 		return clasp;
 	}
 
+	public final int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns the budget generalisations are pruned to fit, as a number of
+	 * clauses, or of literals if {@link #isFitLiterals()}.
+	 */
+	public final long getFit() {
+		return fit;
+	}
+
+	/**
+	 * Returns the most models a single solver call enumerates for the
+	 * non-minimal answers, or 0 if they are found one iteration at a time.
+	 */
+	public final int getEnumerate() {
+		return enumerate;
+	}
+
 	public Path getGringo() {
 		return gringo;
 	}
@@ -264,10 +427,18 @@ public class Config {
 		return iterations;
 	}
 
+	public final int getJobs() {
+		return jobs;
+	}
+
 	public final long getKill() {
 		return kill;
 	}
 
+	public final int getLiterals() {
+		return literals;
+	}
+
 	public final long getBudget() {
 		return budget;
 	}
@@ -280,10 +451,22 @@ public class Config {
 		return name;
 	}
 
+	public final Path getScratch() {
+		return scratch;
+	}
+
 	public final Path[] getSources() {
 		return sources;
 	}
 
+	public final int getWidth() {
+		return width;
+	}
+
+	public final boolean hasScratch() {
+		return null != scratch;
+	}
+
 	public final boolean hasSources() {
 		return sources.length > 0;
 	}
@@ -296,10 +479,26 @@ public class Config {
 		return blind;
 	}
 
+	public final boolean isCompact() {
+		return compact;
+	}
+
 	public final boolean isDebug() {
 		return debug;
 	}
 
+	public final boolean isEnumerate() {
+		return enumerate > 0;
+	}
+
+	public final boolean isFacts() {
+		return facts;
+	}
+
+	public final boolean isFitLiterals() {
+		return fitLiterals;
+	}
+
 	public final boolean isFull() {
 		return full;
 	}
@@ -328,6 +527,10 @@ public class Config {
 		return terminate;
 	}
 
+	public final boolean isUnsliced() {
+		return unsliced;
+	}
+
 	public final boolean isVersion() {
 		return version;
 	}
@@ -347,10 +550,18 @@ public class Config {
 			result += " -a";
 		if (blind)
 			result += " -b";
+		if (cap > 0L)
+			result += " -C " + cap;
 		if (null != clasp)
 			result += " -c " + clasp.toString();
 		if (debug)
 			result += " -d";
+		if (depth > 0)
+			result += " -D " + depth;
+		if (facts)
+			result += " -e";
+		if (fit > 0L)
+			result += " -F " + fit + (fitLiterals ? "l" : "");
 		if (full)
 			result += " -f";
 		if (null != gringo)
@@ -359,16 +570,30 @@ public class Config {
 			result += " -h";
 		if (iterations > 0)
 			result += " -i " + iterations;
+		if (jobs > 0)
+			result += " -j " + jobs;
 		if (kill > 0L)
 			result += " -k " + kill;
+		if (literals > 0)
+			result += " -L " + literals;
 		if (mute)
 			result += " -m";
+		if (enumerate > 0)
+			result += " -n " + enumerate;
 		if (prettify)
 			result += " -p";
+		if (null != scratch)
+			result += " -S " + scratch.toString();
 		if (search)
 			result += " -s";
+		if (unsliced)
+			result += " -u";
 		if (version)
 			result += " -v";
+		if (width > 0)
+			result += " -W " + width;
+		if (compact)
+			result += " -x";
 		for (Path file : sources)
 			result += " " + file.toString();
 		return result;
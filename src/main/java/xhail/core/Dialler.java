@@ -21,8 +21,12 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.StringUtils;
+
 import xhail.core.entities.Grounding;
 import xhail.core.entities.Problem;
 import xhail.core.entities.Solvable;
@@ -38,9 +42,11 @@ public class Dialler {
 
 	public static class Builder implements Buildable<Dialler> {
 
+		private Values bound = null;
 		private Config config;
 		private Path errors = null;
 		private Path middle = null;
+		private int models = 0;
 		private Solvable solvable;
 		private Path source = null;
 		private Path target = null;
@@ -93,6 +99,20 @@ public class Dialler {
 			return new Dialler(this);
 		}
 
+		/**
+		 * Has the solver enumerate at most the given number of models whose
+		 * values are not above the given bound, instead of the optimal ones.
+		 */
+		public Builder setEnumerate(Values bound, int models) {
+			if (null == bound)
+				throw new IllegalArgumentException("Illegal 'bound' argument in Dialler.Builder.setEnumerate(Values, int): " + bound);
+			if (models < 1)
+				throw new IllegalArgumentException("Illegal 'models' argument in Dialler.Builder.setEnumerate(Values, int): " + models);
+			this.bound = bound;
+			this.models = models;
+			return this;
+		}
+
 	}
 
 	private static int calls = 0;
@@ -205,7 +225,12 @@ public class Dialler {
 		if (!solverString.contains("wasp")) {
 			// clasp options
 			solverCmd.add("--verbose=0");
-			if (null == builder.values)
+			if (null != builder.bound) {
+				// models differing on hidden atoms only are the same answer
+				solverCmd.add("--opt-mode=enum," + StringUtils.join(builder.bound.getValues(), ','));
+				solverCmd.add("--models=" + builder.models);
+				solverCmd.add("--project");
+			} else if (null == builder.values)
 				solverCmd.add("--opt-mode=optN");
 			else
 				solverCmd.add("--opt-mode=optN," + builder.values.toString());
@@ -225,6 +250,8 @@ public class Dialler {
 			solverCmd.add("--silent=0"); // very important for parseable output
 			if (null != builder.values)
 				Logger.message("wasp does not support preset of cost function!");
+			if (null != builder.bound)
+				Logger.message("wasp does not support enumeration of models up to a cost!");
 		}
 		this.solver = solverCmd.toArray(new String[solverCmd.size()]);
 
@@ -245,9 +272,34 @@ public class Dialler {
 		this.budget = builder.config.getBudget();
 	}
 
+	/**
+	 * Runs the solver on the program saved for the given iteration, and
+	 * returns the answers found within the bound, by increasing values.
+	 */
+	public SortedMap<Values, Collection<Collection<String>>> enumerate(int iter) {
+		if (iter < 0)
+			throw new IllegalArgumentException("Illegal 'iter' argument in Dialler.enumerate(int): " + iter);
+		InputStream stream = call(iter);
+		if (null != stream)
+			return Acquirer.from(stream).enumerate();
+		return new TreeMap<>();
+	}
+
 	public Map.Entry<Values, Collection<Collection<String>>> execute(int iter) {
 		if (iter < 0)
 			throw new IllegalArgumentException("Illegal 'iter' argument in Dialler.execute(int): " + iter);
+		InputStream stream = call(iter);
+		if (null != stream)
+			return Acquirer.from(stream).parse();
+		return new SimpleEntry<Values, Collection<Collection<String>>>(null, Collections.emptySet());
+	}
+
+	/**
+	 * Runs gringo and the solver on the program saved for the given
+	 * iteration, and returns the output of the solver, or <code>null</code>
+	 * if something went wrong.
+	 */
+	private InputStream call(int iter) {
 		calls += 1;
 		try {
 			solvable.save(iter, Files.newOutputStream(source));
@@ -325,7 +377,7 @@ public class Dialler {
 
 					try {
 						//System.err.println("Dialler reading from target file '"+target+"'");
-						return Acquirer.from(Files.newInputStream(target)).parse();
+						return Files.newInputStream(target);
 					} catch (IOException e) {
 						if (!output)
 							Logger.error("cannot read from solver process");
@@ -348,7 +400,7 @@ public class Dialler {
 			if (!output)
 				Logger.error("cannot write to 'gringo' process");
 		}
-		return new SimpleEntry<Values, Collection<Collection<String>>>(null, Collections.emptySet());
+		return null;
 	}
 
 	private void handle(InputStream stream) {
@@ -0,0 +1,163 @@
+/**
+ *
+ */
+package xhail.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A buffered sink for ASP programs, which writes strings, characters and
+ * numbers straight into a byte buffer, so that rules can be rendered piece by
+ * piece without building intermediate strings.
+ *
+ * @author stefano
+ *
+ */
+public class Emitter implements Closeable {
+
+	private static final String NEWLINE = System.lineSeparator();
+
+	private static final int SIZE = 1 << 16;
+
+	private final byte[] buffer = new byte[SIZE];
+
+	private WritableByteChannel channel = null;
+
+	private int position = 0;
+
+	private final OutputStream stream;
+
+	public Emitter(OutputStream stream) {
+		if (null == stream)
+			throw new IllegalArgumentException("Illegal 'stream' argument in Emitter(OutputStream): " + stream);
+		this.stream = stream;
+	}
+
+	/**
+	 * Appends the given bytes, copying them in bulk.
+	 */
+	public final Emitter append(byte[] bytes) throws IOException {
+		if (null == bytes)
+			throw new IllegalArgumentException("Illegal 'bytes' argument in Emitter.append(byte[]): " + bytes);
+		if (position + bytes.length > SIZE)
+			drain();
+		if (bytes.length > SIZE)
+			stream.write(bytes);
+		else {
+			System.arraycopy(bytes, 0, buffer, position, bytes.length);
+			position += bytes.length;
+		}
+		return this;
+	}
+
+	public final Emitter append(char c) throws IOException {
+		if (c < 0x80) {
+			if (position == SIZE)
+				drain();
+			buffer[position++] = (byte) c;
+			return this;
+		}
+		return append(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+	}
+
+	public final Emitter append(int number) throws IOException {
+		if (number < 0) {
+			if (Integer.MIN_VALUE == number)
+				return append(Integer.toString(number));
+			append('-');
+			number = -number;
+		}
+		if (position + 10 > SIZE)
+			drain();
+		int start = position;
+		do {
+			buffer[position++] = (byte) ('0' + number % 10);
+			number /= 10;
+		} while (number > 0);
+		for (int i = start, j = position - 1; i < j; i++, j--) {
+			byte swap = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = swap;
+		}
+		return this;
+	}
+
+	public final Emitter append(Object object) throws IOException {
+		return append(String.valueOf(object));
+	}
+
+	public final Emitter append(String string) throws IOException {
+		if (null == string)
+			throw new IllegalArgumentException("Illegal 'string' argument in Emitter.append(String): " + string);
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c >= 0x80)
+				return append(string.substring(i).getBytes(StandardCharsets.UTF_8));
+			if (position == SIZE)
+				drain();
+			buffer[position++] = (byte) c;
+		}
+		return this;
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		stream.close();
+	}
+
+	private void drain() throws IOException {
+		stream.write(buffer, 0, position);
+		position = 0;
+	}
+
+	public final void flush() throws IOException {
+		drain();
+		stream.flush();
+	}
+
+	/**
+	 * Appends the given range of the given file, which is copied by the file
+	 * channel without passing through the buffer.
+	 */
+	public final Emitter transfer(FileChannel file, long from, long count) throws IOException {
+		if (null == file)
+			throw new IllegalArgumentException("Illegal 'file' argument in Emitter.transfer(FileChannel, long, long): " + file);
+		if (from < 0L)
+			throw new IllegalArgumentException("Illegal 'from' argument in Emitter.transfer(FileChannel, long, long): " + from);
+		if (count < 0L)
+			throw new IllegalArgumentException("Illegal 'count' argument in Emitter.transfer(FileChannel, long, long): " + count);
+		drain();
+		if (null == channel)
+			channel = Channels.newChannel(stream);
+		while (count > 0L) {
+			long done = file.transferTo(from, count, channel);
+			if (done <= 0L)
+				throw new IOException("the file ended before the range");
+			from += done;
+			count -= done;
+		}
+		return this;
+	}
+
+	/**
+	 * Ends the line.
+	 */
+	public final Emitter line() throws IOException {
+		return append(NEWLINE);
+	}
+
+	/**
+	 * Appends the given string and ends the line.
+	 */
+	public final Emitter line(String string) throws IOException {
+		return append(string).append(NEWLINE);
+	}
+
+}
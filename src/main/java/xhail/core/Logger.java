@@ -99,19 +99,30 @@ public class Logger {
 		System.out.println();
 		System.out.println("  --all,-a            : Print all the best answers");
 		System.out.println("  --blind,-b          : Remove colours from the program output");
+		System.out.println("  --cap,-C <num>      : Generate at most <num> negated literals per mode and level");
 		System.out.println("  --clasp,-c <path>   : Use given <path> as path for clasp 3");
 		System.out.println("  --debug,-d          : Leave temporary files in ./temp");
+		System.out.println("  --depth,-D <num>    : Saturate kernel clauses up to <num> levels");
+		System.out.println("  --enumerate,-n <n>  : Enumerate at most <n> answers up to --iter above the optimum in one solver call");
+		System.out.println("  --facts,-e          : Write examples as facts read by generic rules");
+		System.out.println("  --fit,-F <num>[l]   : Prune generalisations to <num> clauses, or literals if followed by 'l'");
 		System.out.println("  --full,-f           : Show a more detailed output");
 		System.out.println("  --gringo,-g <path>  : Use given <path> as path for gringo 3");
 		System.out.println("  --help,-h           : Print this help and exit");
 		System.out.println("  --iter,-i <num>     : Run <num> iterations for non-minimal answers");
+		System.out.println("  --jobs,-j <num>     : Build and generalise kernel clauses on <num> threads");
 		System.out.println("  --kill,-k <num>     : Stop the program after <num> seconds");
+		System.out.println("  --literals,-L <num> : Keep at most <num> body literals per kernel clause");
 		System.out.println("  --mute,-m           : Suppress warning messages");
 		System.out.println("  --prettify,-p       : Nicely format current problem");
+		System.out.println("  --scratch,-S <path> : Keep ground facts and terms in a file memory-mapped in <path>");
 		System.out.println("  --search,-s         : Search for clasp 3 and gringo 3");
 		System.out.println("  --terminate,-t      : Stop searching hypotheses after first match");
 		System.out.println("  --budget,-B         : Set budget for waiting for external solver calls, use suboptimal solutions");
+		System.out.println("  --unsliced,-u       : Pass the whole background to the solver, relevant or not");
 		System.out.println("  --version,-v        : Print version information and exit");
+		System.out.println("  --width,-W <num>    : Use at most <num> new terms per saturation level");
+		System.out.println("  --compact,-x        : Use a compact encoding of the induction program");
 		System.out.println();
 		System.out.println(String.format("Example:   java -jar %s.jar  -c /Library/Clasp/clasp  -g /Library/Gringo/gringo  example.pl", SIGNATURE));
 		System.out.println();
@@ -230,7 +241,7 @@ public class Logger {
 		System.exit(1);
 	}
 
-	public static void warning(boolean mute, String message) {
+	public static synchronized void warning(boolean mute, String message) {
 		if (null != message && !mute)
 			if (!memory.contains(message)) {
 				memory.add(message);
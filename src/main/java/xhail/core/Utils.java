@@ -3,16 +3,21 @@
  */
 package xhail.core;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import xhail.core.entities.Grounding;
 import xhail.core.entities.Problem;
+import xhail.core.entities.Problem.Segment;
+import xhail.core.parser.Source;
 import xhail.core.statements.Display;
 import xhail.core.statements.Example;
 import xhail.core.statements.ModeB;
@@ -42,6 +47,11 @@ public class Utils {
 					printer.println(statement);
 				for (String statement : problem.getBackground())
 					printer.println(statement);
+				printer.flush();
+				Emitter emitter = new Emitter(stream);
+				for (Source source : problem.getSources())
+					source.emit(emitter);
+				emitter.flush();
 				printer.println();
 			}
 			if (problem.hasExamples()) {
@@ -65,6 +75,90 @@ public class Utils {
 		return false;
 	}
 
+	private static void emitExamples(Example[] examples, boolean facts, Emitter out) throws IOException {
+		if (facts) {
+			for (String statement : Example.asRules(examples))
+				out.line(statement);
+			for (Example example : examples)
+				out.line(example.asFact());
+		} else
+			for (Example example : examples)
+				for (String statement : example.asClauses())
+					out.line(statement);
+	}
+
+	/**
+	 * Renders the given segment of the induction program of the given
+	 * grounding, which only depends on its problem.
+	 */
+	private static byte[] render(Grounding grounding, Segment segment) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try (Emitter emitter = new Emitter(stream)) {
+			if (Segment.INDUCTION == segment) {
+				for (String filter : grounding.getFilters())
+					emitter.line(filter);
+				emitter.line();
+				emitter.line("%%% B. Background");
+				for (String statement : grounding.getDomains())
+					emitter.line(statement);
+				for (String statement : grounding.getProblem().getSlice())
+					emitter.line(statement);
+				// for (Display display : grounding.getDisplays())
+				// printer.println(display.asClauses());
+			} else {
+				emitter.line();
+				emitter.line("%%% E. Examples");
+				emitExamples(grounding.getExamples(), grounding.getConfig().isFacts(), emitter);
+				emitter.line();
+				emitter.line("%%% C. Compression");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Renders the given segment of the abduction program of the given
+	 * problem.
+	 */
+	private static byte[] render(Problem problem, Segment segment) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try (Emitter emitter = new Emitter(stream)) {
+			if (Segment.BACKGROUND == segment) {
+				for (String filter : problem.getFilters())
+					emitter.line(filter);
+				emitter.line();
+				emitter.line("%%% B. Background");
+				for (String statement : problem.getDomains())
+					emitter.line(statement);
+				for (String statement : problem.getSlice())
+					emitter.line(statement);
+				// for (Display display : problem.getDisplays())
+				// printer.println(display.asClauses());
+			} else {
+				boolean iterate = Segment.ITERATION == segment;
+				emitter.line();
+				emitter.line("%%% E. Examples");
+				emitExamples(problem.getExamples(), problem.getConfig().isFacts(), emitter);
+				emitter.line();
+				emitter.line("%%% I. Inflation");
+				if (iterate) {
+					emitter.line(":-bad_solution.");
+					emitter.line("number_abduced(V):- V = #sum { W,U: number_abduced(U,W) }.");
+				}
+				for (ModeH mode : problem.getModeHs())
+					for (String statement : mode.asClauses())
+						if (iterate || !statement.startsWith("number_abduced("))
+							emitter.line(statement);
+				emitter.line();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return stream.toByteArray();
+	}
+
 	public static boolean save(Grounding grounding, int iter, OutputStream stream) {
 		if (null == grounding)
 			throw new IllegalArgumentException("Illegal 'grounding' argument in Utils.save(Grounding, int, OutputStream): " + grounding);
@@ -73,28 +167,16 @@ public class Utils {
 		if (null == stream)
 			throw new IllegalArgumentException("Illegal 'stream' argument in Utils.save(Grounding, int, OutputStream): " + stream);
 		try {
-			PrintStream printer = new PrintStream(stream);
-			for (String filter : grounding.getFilters())
-				printer.println(filter);
-			printer.println();
-			printer.println("%%% B. Background");
-			for (String statement : grounding.getDomains())
-				printer.println(statement);
-			for (String statement : grounding.getBackground())
-				printer.println(statement);
-			// for (Display display : grounding.getDisplays())
-			// printer.println(display.asClauses());
-			printer.println();
-			printer.println("%%% E. Examples");
-			for (Example example : grounding.getExamples())
-				for (String statement : example.asClauses())
-					printer.println(statement);
-			printer.println();
-			printer.println("%%% C. Compression");
-			for (String statement : grounding.asClauses())
-				printer.println(statement);
-			printer.println();
-			printer.close();
+			Emitter emitter = new Emitter(stream);
+			Problem problem = grounding.getProblem();
+			problem.emitSegment(Segment.INDUCTION, Arrays.asList(grounding.getFilters(), Arrays.asList(grounding.getDomains()), Arrays.asList(problem.getSlice())),
+					() -> render(grounding, Segment.INDUCTION), emitter);
+			problem.emitSources(emitter);
+			problem.emitSegment(Segment.EXAMPLES, Arrays.asList(Arrays.asList(grounding.getExamples()), grounding.getConfig().isFacts()),
+					() -> render(grounding, Segment.EXAMPLES), emitter);
+			grounding.emitClauses(emitter);
+			emitter.line();
+			emitter.close();
 			return true;
 		} catch (Exception e) {
       Logger.error("save(Grounding): cannot stream data to processes:" + e.toString());
@@ -110,36 +192,16 @@ public class Utils {
 		if (null == stream)
 			throw new IllegalArgumentException("Illegal 'stream' argument in Utils.save(Problem, int, OutputStream): " + stream);
 		try {
-			PrintStream printer = new PrintStream(stream);
-			for (String filter : problem.getFilters())
-				printer.println(filter);
-			printer.println();
-			printer.println("%%% B. Background");
-			for (String statement : problem.getDomains())
-				printer.println(statement);
-			for (String statement : problem.getBackground())
-				printer.println(statement);
-			// for (Display display : problem.getDisplays())
-			// printer.println(display.asClauses());
+			Emitter emitter = new Emitter(stream);
+			problem.emitSegment(Segment.BACKGROUND, Arrays.asList(problem.getFilters(), Arrays.asList(problem.getDomains()), Arrays.asList(problem.getSlice())),
+					() -> render(problem, Segment.BACKGROUND), emitter);
+			problem.emitSources(emitter);
 			for (String refinement : problem.getRefinements())
-				printer.println(refinement);
-			printer.println();
-			printer.println("%%% E. Examples");
-			for (Example example : problem.getExamples())
-				for (String statement : example.asClauses())
-					printer.println(statement);
-			printer.println();
-			printer.println("%%% I. Inflation");
-			if (iter > 0) {
-				printer.println(":-bad_solution.");
-				printer.println("number_abduced(V):- V = #sum { W,U: number_abduced(U,W) }.");
-			}
-			for (ModeH mode : problem.getModeHs())
-				for (String statement : mode.asClauses())
-					if (iter > 0 || !statement.startsWith("number_abduced("))
-						printer.println(statement);
-			printer.println();
-			printer.close();
+				emitter.line(refinement);
+			Segment segment = iter > 0 ? Segment.ITERATION : Segment.INFLATION;
+			problem.emitSegment(segment, Arrays.asList(Arrays.asList(problem.getExamples()), Arrays.asList(problem.getModeHs()), problem.getConfig().isFacts()),
+					() -> render(problem, segment), emitter);
+			emitter.close();
 			return true;
 		} catch (Exception e) {
       Logger.error("save(Problem): cannot stream data to processes:" + e.toString());
@@ -9,12 +9,14 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 
 import org.apache.commons.collections4.iterators.ArrayIterator;
 
 import xhail.core.Buildable;
 import xhail.core.Config;
 import xhail.core.Dialler;
+import xhail.core.terms.Clause;
 
 /**
  * @author stefano
@@ -153,6 +155,26 @@ public class Answers implements Iterable<Answer> {
 		return result;
 	}
 
+	public static SortedMap<Values, Collection<Collection<String>>> timeEnumeration(int iter, Dialler dialer) {
+		if (iter < 0)
+			throw new IllegalArgumentException("Illegal 'iter' argument in Answers.timeEnumeration(int, Dialer): " + iter);
+		if (null == dialer)
+			throw new IllegalArgumentException("Illegal 'dialer' argument in Answers.timeEnumeration(int, Dialer): " + dialer);
+		long time = System.nanoTime();
+		SortedMap<Values, Collection<Collection<String>>> result = dialer.enumerate(iter);
+		abduction += (System.nanoTime() - time);
+		return result;
+	}
+
+	public static Clause[] timeDeduction(Grounding grounding) {
+		if (null == grounding)
+			throw new IllegalArgumentException("Illegal 'grounding' argument in Answers.timeDeduction(Grounding): " + grounding);
+		long time = System.nanoTime();
+		Clause[] result = grounding.getGeneralisation();
+		deduction += (System.nanoTime() - time);
+		return result;
+	}
+
 	public static Hypothesis timeDeduction(Grounding grounding, Collection<String> output) {
 		if (null == grounding)
 			throw new IllegalArgumentException("Illegal 'grounding' argument in Answers.timeDeduction(Grounding, Collection<String>): " + grounding);
@@ -172,7 +194,19 @@ public class Answers implements Iterable<Answer> {
 			throw new IllegalArgumentException("Illegal 'output' argument in Answers.timeDeduction(Problem, Collection<String>): " + output);
 		long time = System.nanoTime();
 		Grounding result = new Grounding.Builder(problem).parse(output).build();
-		result.getGeneralisation();
+		deduction += (System.nanoTime() - time);
+		return result;
+	}
+
+	public static Grounding timeDeduction(Problem problem, Grounding base, Collection<String> output) {
+		if (null == problem)
+			throw new IllegalArgumentException("Illegal 'problem' argument in Answers.timeDeduction(Problem, Grounding, Collection<String>): " + problem);
+		if (null == base)
+			throw new IllegalArgumentException("Illegal 'base' argument in Answers.timeDeduction(Problem, Grounding, Collection<String>): " + base);
+		if (null == output)
+			throw new IllegalArgumentException("Illegal 'output' argument in Answers.timeDeduction(Problem, Grounding, Collection<String>): " + output);
+		long time = System.nanoTime();
+		Grounding result = new Grounding.Builder(problem, base).parse(output).build();
 		deduction += (System.nanoTime() - time);
 		return result;
 	}
@@ -3,17 +3,30 @@
  */
 package xhail.core.entities;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.TreeMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.lang.Math;
 
 import org.apache.commons.lang3.StringUtils;
@@ -21,8 +34,13 @@ import org.apache.commons.lang3.StringUtils;
 import xhail.core.Buildable;
 import xhail.core.Config;
 import xhail.core.Dialler;
+import xhail.core.Emitter;
 import xhail.core.Logger;
 import xhail.core.Utils;
+import xhail.core.facts.Dictionary;
+import xhail.core.facts.FactOverlay;
+import xhail.core.facts.FactStore;
+import xhail.core.facts.Facts;
 import xhail.core.parser.Parser;
 import xhail.core.statements.Display;
 import xhail.core.statements.Example;
@@ -30,9 +48,12 @@ import xhail.core.statements.ModeB;
 import xhail.core.statements.ModeH;
 import xhail.core.terms.Atom;
 import xhail.core.terms.Clause;
+import xhail.core.terms.Generator;
 import xhail.core.terms.Literal;
+import xhail.core.terms.Placemarker;
 import xhail.core.terms.Scheme;
 import xhail.core.terms.SchemeTerm;
+import xhail.core.terms.Subsumption;
 import xhail.core.terms.Term;
 import xhail.core.terms.Variable;
 
@@ -42,18 +63,74 @@ import xhail.core.terms.Variable;
  */
 public class Grounding implements Solvable {
 
+	/**
+	 * A sink cutting what is written into lines, each added to the given list
+	 * once it ends.
+	 */
+	private static class Lines extends OutputStream {
+
+		private byte[] line = new byte[256];
+
+		private final List<String> lines;
+
+		private int size = 0;
+
+		private Lines(List<String> lines) {
+			this.lines = lines;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			for (int i = offset; i < offset + length; i++)
+				write(bytes[i]);
+		}
+
+		@Override
+		public void write(int b) {
+			if ('\n' == b) {
+				int end = size > 0 && '\r' == line[size - 1] ? size - 1 : size;
+				lines.add(new String(line, 0, end, StandardCharsets.UTF_8));
+				size = 0;
+			} else {
+				if (size == line.length)
+					line = Arrays.copyOf(line, 2 * size);
+				line[size++] = (byte) b;
+			}
+		}
+
+	}
+
 	public static class Builder implements Buildable<Grounding> {
 
+		private Grounding base = null;
 		private Set<Literal> covered = new HashSet<>();
 		private Set<Atom> delta = new HashSet<>();
-		private Set<Atom> facts = new HashSet<>();
-		private Set<Atom> model = new HashSet<>();
+		private Facts facts;
+		private FactStore model;
 		private Problem problem;
 		private Set<Literal> uncovered = new HashSet<>();
 
 		public Builder(Problem problem) {
 			if (null == problem)
 				throw new IllegalArgumentException("Illegal 'problem' argument in Grounding.Builder(Problem): " + problem);
+			this.facts = new FactStore(problem.getDictionary());
+			this.model = new FactStore(problem.getDictionary());
+			this.problem = problem;
+		}
+
+		/**
+		 * Creates a builder whose facts and table are layered on top of the
+		 * ones of the given base grounding, which must be built from facts
+		 * shared by all the groundings using it.
+		 */
+		public Builder(Problem problem, Grounding base) {
+			if (null == problem)
+				throw new IllegalArgumentException("Illegal 'problem' argument in Grounding.Builder(Problem, Grounding): " + problem);
+			if (null == base || !(base.facts instanceof FactStore))
+				throw new IllegalArgumentException("Illegal 'base' argument in Grounding.Builder(Problem, Grounding): " + base);
+			this.base = base;
+			this.facts = new FactOverlay((FactStore) base.facts);
+			this.model = new FactStore(problem.getDictionary());
 			this.problem = problem;
 		}
 
@@ -132,6 +209,30 @@ public class Grounding implements Solvable {
 
 	}
 
+	/**
+	 * The limits that can cut the saturation of a kernel clause short.
+	 */
+	public static enum Limit {
+
+		DEPTH("--depth,-D"), LITERALS("--literals,-L"), WIDTH("--width,-W");
+
+		private final String option;
+
+		private Limit(String option) {
+			this.option = option;
+		}
+
+		public final String getOption() {
+			return option;
+		}
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+
+	}
+
 	private final Config config;
 
 	private final int count;
@@ -140,20 +241,50 @@ public class Grounding implements Solvable {
 
 	private final Atom[] delta;
 
-	private final Set<Atom> facts;
+	private final Grounding base;
+
+	private final Facts facts;
+
+	/**
+	 * The part of the fingerprint given by the delta, computed at build time.
+	 */
+	private final long deltaprint;
+
+	private volatile Long fingerprint = null;
+
+	/**
+	 * The part of the fingerprint given by the facts, if this grounding is
+	 * shared as a base by others.
+	 */
+	private volatile Long factprint = null;
 
 	private Clause[] generalisation;
 
 	private Clause[] kernel;
 
-	private final Atom[] model;
+	private Set<Limit> limits;
+
+	private final FactStore model;
 
 	private final Problem problem;
 
+	/**
+	 * The seeds telling apart the hashes of delta atoms, facts and typed atoms.
+	 */
+	private static final long DELTA = 1L;
+
+	private static final long FACT = 2L;
+
+	private static final long TYPED = 3L;
+
 	private final Map<SchemeTerm, Set<Atom>> table;
 
 	private final Literal[] uncovered;
 
+	private final AtomicInteger unrelated = new AtomicInteger();
+
+	private final AtomicInteger redundant = new AtomicInteger();
+
   private final int BASEPRIO = 0; // see also Modeh.java, add this to weak constraint priority
 
 	private Grounding(Builder builder) {
@@ -162,108 +293,217 @@ public class Grounding implements Solvable {
 		this.config = builder.problem.getConfig();
 		this.count = builder.delta.size();
 		this.covered = builder.covered.toArray(new Literal[builder.covered.size()]);
+		Arrays.sort(this.covered);
 		this.delta = builder.delta.toArray(new Atom[builder.delta.size()]);
+		Arrays.sort(this.delta);
+		this.base = builder.base;
 		this.facts = builder.facts;
-		this.model = builder.model.toArray(new Atom[builder.model.size()]);
+		Dictionary dictionary = builder.facts.getDictionary();
+		long deltaprint = 0L;
+		for (Atom atom : this.delta) {
+			int[] arguments = new int[atom.getArity()];
+			for (int i = 0; i < arguments.length; i++)
+				arguments[i] = dictionary.encode(atom.getTerm(i));
+			deltaprint += fingerprint(DELTA, dictionary.encode(atom.getIdentifier(), atom.getArity()), arguments);
+		}
+		this.deltaprint = deltaprint;
+		this.model = builder.model;
 		this.problem = builder.problem;
-		this.table = SchemeTerm.lookup(builder.problem.getModeHs(), builder.problem.getModeBs(), builder.facts);
+		if (null == builder.base)
+			this.table = SchemeTerm.lookup(builder.problem.getModeHs(), builder.problem.getModeBs(), builder.facts);
+		else
+			this.table = SchemeTerm.lookup(builder.base.table, (FactOverlay) builder.facts);
 		this.uncovered = builder.uncovered.toArray(new Literal[builder.uncovered.size()]);
+		Arrays.sort(this.uncovered);
 	}
 
 	public final String asBadSolution() {
 		return String.format("bad_solution:-%snumber_abduced(%d).", count > 0 ? StringUtils.join(delta, ",") + "," : "", count);
 	}
 
+	/**
+	 * Returns the rules of the compression program, one string per line
+	 * written by {@link #emitClauses(Emitter)}.
+	 */
 	public String[] asClauses() {
-		Set<String> result = new LinkedHashSet<>();
+		List<String> result = new ArrayList<>();
+		try (Emitter emitter = new Emitter(new Lines(result))) {
+			emitClauses(emitter);
+		} catch (IOException e) {
+			Logger.error("cannot render the clauses: " + e.getMessage());
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * Writes the compression program of the generalisation into the given
+	 * emitter, rule by rule, in the encoding chosen by the configuration.
+	 */
+	public void emitClauses(Emitter out) throws IOException {
+		if (null == out)
+			throw new IllegalArgumentException("Illegal 'out' argument in Grounding.emitClauses(Emitter): " + out);
 		Clause[] clauses = getGeneralisation();
 		if (clauses.length > 0) {
-			result.add("{ use_clause_literal(V1,0) }:-clause(V1).");
-
-			boolean hasLiterals = false;
-			for (int clauseId = 0; !hasLiterals && clauseId < clauses.length; clauseId++)
-				hasLiterals = clauses[clauseId].getBody().length > 0;
-
-			if (hasLiterals)
-				result.add("{ use_clause_literal(V1,V2) }:-clause(V1),literal(V1,V2).");
-
-			for (int clauseId = 0; clauseId < clauses.length; clauseId++) {
-				result.add(String.format("%% %s", clauses[clauseId]));
-				Literal[] literals = clauses[clauseId].getBody();
-				result.add(String.format("clause(%d).", clauseId));
-				for (int literalId = 1; literalId <= literals.length; literalId++)
-					result.add(String.format("literal(%d,%d).", clauseId, literalId));
-
-				for (int level = 0; level < clauses[clauseId].getLevels(); level++)
-					result.add(String.format(":-not clause_level(%d,%d),clause_level(%d,%d).", clauseId, level, clauseId, 1 + level));
-
-				result.add(String.format("clause_level(%d,0):-use_clause_literal(%d,0).", clauseId, clauseId));
-				for (int literalId = 1; literalId <= literals.length; literalId++)
-					result.add(String.format("clause_level(%d,%d):-use_clause_literal(%d,%d).", clauseId, literals[literalId - 1].getLevel(), clauseId,
-							literalId));
-
-				Atom head = clauses[clauseId].getHead();
-				//result.add(String.format("#minimize[ use_clause_literal(%d,0) =%d @%d ].", clauseId, head.getWeight(), head.getPriority()));
-				result.add(String.format(":~ use_clause_literal(%d,0). [%d@%d,%d]", clauseId, head.getWeight(), head.getPriority()+BASEPRIO, clauseId));
-
-				for (int literalId = 1; literalId <= literals.length; literalId++)
-					//result.add(String.format("#minimize[ use_clause_literal(%d,%d) =%d @%d ].", clauseId, literalId, //
-					//		literals[literalId - 1].getWeight(), literals[literalId - 1].getPriority()));
-					result.add(String.format(":~ use_clause_literal(%d,%d). [%d@%d,use_clause_literal(%d,%d)]",
-						clauseId, literalId,
-						literals[literalId - 1].getWeight(), literals[literalId - 1].getPriority()+BASEPRIO,
-						clauseId, literalId));
-
-				Set<String> set = new LinkedHashSet<>();
-				for (String type : head.getTypes())
-					set.add(type);
-				String[] array = new String[literals.length];
-				for (int literalId = 1; literalId <= literals.length; literalId++) {
-					String variables = literals[literalId - 1].hasVariables() ? "," + StringUtils.join(literals[literalId - 1].getVariables(), ",") : "";
-					array[literalId - 1] = String.format("try_clause_literal(%d,%d%s)", clauseId, literalId, variables);
-					for (String type : literals[literalId - 1].getTypes())
-						set.add(type);
+			// the modes with an upper bound matched by each literal, found once
+			List<ModeB> limited = new ArrayList<>();
+			for (ModeB mode : problem.getModeBs())
+				if (mode.getUpper() != Integer.MAX_VALUE)
+					limited.add(mode);
+			Map<Literal, BitSet> matches = new HashMap<>();
+			if (problem.getConfig().isCompact())
+				emitCompact(out, clauses, limited, matches);
+			else
+				emitExpanded(out, clauses, limited, matches);
+		}
+	}
+
+	/**
+	 * Writes the compact encoding, where levels and costs of literals are facts
+	 * read by generic rules, and each clause is a single rule whose body literals
+	 * are conditioned on their use, sharing the type guards of the clause.
+	 */
+	private void emitCompact(Emitter out, Clause[] clauses, List<ModeB> limited, Map<Literal, BitSet> matches) throws IOException {
+		out.line("{ use_clause_literal(V1,V2) }:-literal(V1,V2,V3,V4,V5).");
+		out.line("clause_level(V1,V3):-use_clause_literal(V1,V2),literal(V1,V2,V3,V4,V5).");
+		out.line(":-clause_level(V1,V2),V2>0,not clause_level(V1,V2-1).");
+		out.line(":~ use_clause_literal(V1,V2),literal(V1,V2,V3,V4,V5). [V4@V5,use_clause_literal(V1,V2)]");
+		for (int clauseId = 0; clauseId < clauses.length; clauseId++) {
+			out.append("% ").line(clauses[clauseId].toString());
+			Atom head = clauses[clauseId].getHead();
+			Literal[] literals = clauses[clauseId].getBody();
+			out.append("literal(").append(clauseId).append(",0,0,").append(head.getWeight()).append(',').append(head.getPriority() + BASEPRIO)
+					.line(").");
+			for (int literalId = 1; literalId <= literals.length; literalId++)
+				out.append("literal(").append(clauseId).append(',').append(literalId).append(',').append(literals[literalId - 1].getLevel())
+						.append(',').append(literals[literalId - 1].getWeight()).append(',').append(literals[literalId - 1].getPriority() + BASEPRIO)
+						.line(").");
+
+			Set<String> types = new LinkedHashSet<>();
+			for (String type : head.getTypes())
+				types.add(type);
+			for (Literal literal : literals)
+				for (String type : literal.getTypes())
+					types.add(type);
+			out.append(head).append(":-use_clause_literal(").append(clauseId).append(",0)");
+			for (String type : types)
+				out.append(',').append(type);
+			for (int literalId = 1; literalId <= literals.length; literalId++)
+				out.append(1 == literalId ? ',' : ';').append(literals[literalId - 1]).append(":use_clause_literal(").append(clauseId).append(',')
+						.append(literalId).append(')');
+			out.line(".");
+
+			emitLimits(out, clauseId, literals, limited, matches);
+		}
+	}
+
+	/**
+	 * Writes the expanded encoding, where each literal is tried by a rule of its
+	 * own.
+	 */
+	private void emitExpanded(Emitter out, Clause[] clauses, List<ModeB> limited, Map<Literal, BitSet> matches) throws IOException {
+		out.line("{ use_clause_literal(V1,0) }:-clause(V1).");
+
+		boolean hasLiterals = false;
+		for (int clauseId = 0; !hasLiterals && clauseId < clauses.length; clauseId++)
+			hasLiterals = clauses[clauseId].getBody().length > 0;
+
+		if (hasLiterals)
+			out.line("{ use_clause_literal(V1,V2) }:-clause(V1),literal(V1,V2).");
+
+		for (int clauseId = 0; clauseId < clauses.length; clauseId++) {
+			out.append("% ").line(clauses[clauseId].toString());
+			Literal[] literals = clauses[clauseId].getBody();
+			out.append("clause(").append(clauseId).line(").");
+			for (int literalId = 1; literalId <= literals.length; literalId++)
+				out.append("literal(").append(clauseId).append(',').append(literalId).line(").");
+
+			for (int level = 0; level < clauses[clauseId].getLevels(); level++)
+				out.append(":-not clause_level(").append(clauseId).append(',').append(level).append("),clause_level(").append(clauseId).append(',')
+						.append(1 + level).line(").");
+
+			out.append("clause_level(").append(clauseId).append(",0):-use_clause_literal(").append(clauseId).line(",0).");
+			for (int literalId = 1; literalId <= literals.length; literalId++)
+				out.append("clause_level(").append(clauseId).append(',').append(literals[literalId - 1].getLevel()).append("):-use_clause_literal(")
+						.append(clauseId).append(',').append(literalId).line(").");
+
+			Atom head = clauses[clauseId].getHead();
+			out.append(":~ use_clause_literal(").append(clauseId).append(",0). [").append(head.getWeight()).append('@')
+					.append(head.getPriority() + BASEPRIO).append(',').append(clauseId).line("]");
+
+			for (int literalId = 1; literalId <= literals.length; literalId++)
+				out.append(":~ use_clause_literal(").append(clauseId).append(',').append(literalId).append("). [")
+						.append(literals[literalId - 1].getWeight()).append('@').append(literals[literalId - 1].getPriority() + BASEPRIO)
+						.append(",use_clause_literal(").append(clauseId).append(',').append(literalId).line(")]");
+
+			Set<String> types = new LinkedHashSet<>();
+			for (String type : head.getTypes())
+				types.add(type);
+			for (Literal literal : literals)
+				for (String type : literal.getTypes())
+					types.add(type);
+			out.append(head).append(":-use_clause_literal(").append(clauseId).append(",0)");
+			for (int literalId = 1; literalId <= literals.length; literalId++)
+				emitTry(out.append(','), clauseId, literalId, literals[literalId - 1]);
+			for (String type : types)
+				out.append(',').append(type);
+			out.line(".");
+
+			for (int literalId = 1; literalId <= literals.length; literalId++) {
+				Literal literal = literals[literalId - 1];
+				emitTry(out, clauseId, literalId, literal).append(":-use_clause_literal(").append(clauseId).append(',').append(literalId)
+						.append("),").append(literal);
+				for (String type : literal.getTypes())
+					out.append(',').append(type);
+				out.line(".");
+				emitTry(out, clauseId, literalId, literal).append(":-not use_clause_literal(").append(clauseId).append(',').append(literalId)
+						.append(')');
+				for (String type : literal.getTypes())
+					out.append(',').append(type);
+				out.line(".");
+			}
+
+			emitLimits(out, clauseId, literals, limited, matches);
+		}
+	}
+
+	/**
+	 * For modeB count restrictions, adds constraints to limit how many literals
+	 * of the given clause are used in solutions.
+	 */
+	private static void emitLimits(Emitter out, int clauseId, Literal[] literals, List<ModeB> limited, Map<Literal, BitSet> matches) throws IOException {
+		for (int modeId = 0; modeId < limited.size(); modeId++) {
+			ModeB mode = limited.get(modeId);
+			boolean first = true;
+			for (int literalId = 1; literalId <= literals.length; literalId++) {
+				Literal literal = literals[literalId - 1];
+				BitSet matching = matches.get(literal);
+				if (null == matching) {
+					matching = new BitSet();
+					for (int i = 0; i < limited.size(); i++)
+						// XXX there is mode.isNegated(), scheme.isNegated(), literal.isNegated() but the second seems unused
+						if (literal.isNegated() == limited.get(i).isNegated() && SchemeTerm.isMatching(limited.get(i).getScheme(), literal.getAtom()))
+							matching.set(i);
+					matches.put(literal, matching);
 				}
-				String typesAll = !set.isEmpty() ? "," + StringUtils.join(set, ",") : "";
-				String literalsAll = array.length > 0 ? "," + StringUtils.join(array, ",") : "";
-				result.add(String.format("%s:-use_clause_literal(%d,0)%s%s.", head, clauseId, literalsAll, typesAll));
-
-				for (int literalId = 1; literalId <= literals.length; literalId++) {
-					String variables = literals[literalId - 1].hasVariables() ? "," + StringUtils.join(literals[literalId - 1].getVariables(), ",") : "";
-					String types = literals[literalId - 1].hasTypes() ? "," + StringUtils.join(literals[literalId - 1].getTypes(), ",") : "";
-					result.add(String.format("try_clause_literal(%d,%d%s):-use_clause_literal(%d,%d),%s%s.", //
-							clauseId, literalId, variables, clauseId, literalId, literals[literalId - 1], types));
-					result.add(String.format("try_clause_literal(%d,%d%s):-not use_clause_literal(%d,%d)%s.", //
-							clauseId, literalId, variables, clauseId, literalId, types));
+				if (matching.get(modeId)) {
+					// need to apply modeB restriction (cannot use more than <limit> at once)
+					out.append(first ? ":- " : ";");
+					if (first)
+						out.append(mode.getUpper()).append(" < #count { ");
+					out.append(literalId).append(":use_clause_literal(").append(clauseId).append(',').append(literalId).append(')');
+					first = false;
 				}
-
-        // For modeB count restrictions, add constraints to limit how many literals are used in solutions
-        for (ModeB mode : problem.getModeBs()) {
-          Scheme scheme = mode.getScheme();
-          if (mode.getUpper() != Integer.MAX_VALUE) {
-            //Logger.message(String.format("Grounding::asClauses checking ModeB %s scheme %s with limit %d", mode.toString(), scheme.toString(), mode.getUpper()));
-            // find out which literals are from this mode and limit them
-            Set<String> literalsToLimit = new LinkedHashSet<>();
-            for (int literalId = 1; literalId <= literals.length; literalId++) {
-              Literal literal = literals[literalId-1];
-              //Logger.message(String.format("checking literal %s/atom %s", literal.toString(), literal.getAtom().toString()));
-              // XXX there is mode.isNegated(), scheme.isNegated(), literal.isNegated() but the second seems unused
-              if (literal.isNegated() == mode.isNegated() && SchemeTerm.isMatching(scheme, literal.getAtom())) {
-                String limitLiteral = String.format("%d:use_clause_literal(%d,%d)", literalId, clauseId, literalId);
-                literalsToLimit.add(limitLiteral);
-                //Logger.message("matching! added "+limitLiteral);
-              }
-            }
-            if( !literalsToLimit.isEmpty() ) {
-              // need to apply modeB restriction (cannot use more than <limit> at once)
-              result.add(String.format(":- %d < #count { %s }.",
-                  mode.getUpper(), StringUtils.join(literalsToLimit, ";")));
-            }
-          }
-        }
 			}
+			if (!first)
+				out.line(" }.");
 		}
-		return result.toArray(new String[result.size()]);
+	}
+
+	private static Emitter emitTry(Emitter out, int clauseId, int literalId, Literal literal) throws IOException {
+		out.append("try_clause_literal(").append(clauseId).append(',').append(literalId);
+		for (Variable variable : literal.getVariables())
+			out.append(',').append(variable);
+		return out.append(')');
 	}
 
 	@Override
@@ -288,7 +528,7 @@ public class Grounding implements Solvable {
 			return false;
 		if (!Arrays.equals(kernel, other.kernel))
 			return false;
-		if (!Arrays.equals(model, other.model))
+		if (!model.equals(other.model))
 			return false;
 		if (table == null) {
 			if (other.table != null)
@@ -341,6 +581,17 @@ public class Grounding implements Solvable {
 		return facts;
 	}
 
+	/**
+	 * Returns a hash of the delta and of the facts that saturation can look
+	 * at, which answers leading to the same kernel share. It is computed on
+	 * first use, from the encoded tuples of the facts.
+	 */
+	public final long getFingerprint() {
+		if (null == fingerprint)
+			fingerprint = mix(deltaprint + getFactprint() + getTypeprint());
+		return fingerprint;
+	}
+
 	public final Collection<String> getFilters() {
 		Set<String> result = new TreeSet<>();
 		//result.add("#hide.");
@@ -357,54 +608,394 @@ public class Grounding implements Solvable {
 		return result;
 	}
 
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	/**
+	 * Hashes the given encoded tuple on 64 bits, mixing each component as the
+	 * finaliser of MurmurHash3 does, so that sums of hashes rarely collide.
+	 */
+	private static long fingerprint(long seed, int predicate, int... arguments) {
+		long result = mix(seed ^ (0x9e3779b97f4a7c15L * (1 + predicate)));
+		for (int argument : arguments)
+			result = mix(result ^ (0x9e3779b97f4a7c15L * (1 + argument)));
+		return result;
+	}
+
+	/**
+	 * Sums the hashes of the tuples of the given store whose predicate is one
+	 * of the given ones.
+	 */
+	private static long fingerprint(FactStore store, int[] predicates) {
+		long result = 0L;
+		for (int predicate : predicates)
+			for (int offset : store.select(predicate)) {
+				int[] arguments = new int[store.getDictionary().getArity(predicate)];
+				for (int i = 0; i < arguments.length; i++)
+					arguments[i] = store.getArgument(offset, i);
+				result += fingerprint(FACT, predicate, arguments);
+			}
+		return result;
+	}
+
+	/**
+	 * Returns the encoded predicates of the signatures of schemes and types,
+	 * or of the unary ones only.
+	 */
+	private int[] getPredicates(boolean unary) {
+		Dictionary dictionary = facts.getDictionary();
+		List<Integer> result = new ArrayList<>();
+		for (Map.Entry<String, Set<Integer>> entry : problem.getSignatures().entrySet())
+			for (Integer arity : entry.getValue())
+				if (!unary || 1 == arity) {
+					int predicate = dictionary.lookup(entry.getKey(), arity);
+					if (predicate >= 0)
+						result.add(predicate);
+				}
+		return result.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Returns the hash of the facts of the signatures of schemes and types.
+	 * The facts shared with the base grounding are hashed once, by the base.
+	 */
+	private long getFactprint() {
+		if (null == factprint) {
+			int[] predicates = getPredicates(false);
+			if (facts instanceof FactOverlay) {
+				FactOverlay overlay = (FactOverlay) facts;
+				factprint = base.getFactprint() + fingerprint(overlay.getAdded(), predicates) - fingerprint(overlay.getRemoved(), predicates);
+			} else
+				factprint = fingerprint((FactStore) facts, predicates);
+		}
+		return factprint;
+	}
+
+	/**
+	 * Returns the hash of the atoms that are facts and arguments of unary
+	 * facts of the signatures, when their own signature is not one of them.
+	 */
+	private long getTypeprint() {
+		Dictionary dictionary = facts.getDictionary();
+		Map<String, Set<Integer>> signatures = problem.getSignatures();
+		int[] predicates = getPredicates(true);
+		List<FactStore> stores = new ArrayList<>();
+		FactStore removed = null;
+		if (facts instanceof FactOverlay) {
+			FactOverlay overlay = (FactOverlay) facts;
+			stores.add(overlay.getBase());
+			stores.add(overlay.getAdded());
+			if (!overlay.getRemoved().isEmpty())
+				removed = overlay.getRemoved();
+		} else
+			stores.add((FactStore) facts);
+		long result = 0L;
+		for (FactStore store : stores)
+			for (int predicate : predicates)
+				for (int offset : store.select(predicate)) {
+					int argument = store.getArgument(offset, 0);
+					Term term = dictionary.getTerm(argument);
+					if (term instanceof Atom && (null == removed || store != stores.get(0) || !removed.contains(store.decode(offset)))) {
+						Atom atom = (Atom) term;
+						Set<Integer> arities = signatures.get(atom.getIdentifier());
+						if ((null == arities || !arities.contains(atom.getArity())) && facts.contains(atom))
+							result += fingerprint(TYPED, predicate, argument);
+					}
+				}
+		return result;
+	}
+
+	/**
+	 * Returns the smallest support threshold such that the clauses supported
+	 * by more fit the given budget, of clauses or of literals; if none does,
+	 * the largest threshold keeping some clause is returned.
+	 */
+	static long fit(Map<Clause, Integer> supports, long budget, boolean literals) {
+		TreeMap<Integer, Integer> sizes = new TreeMap<>();
+		for (Map.Entry<Clause, Integer> entry : supports.entrySet())
+			sizes.merge(entry.getValue(), literals ? 1 + entry.getKey().getBody().length : 1, Integer::sum);
+		long size = 0L;
+		long result = 0L;
+		// thresholds are tried from the highest, adding clauses as they are kept
+		for (Map.Entry<Integer, Integer> entry : sizes.descendingMap().entrySet()) {
+			if (size > 0L && size + entry.getValue() > budget)
+				return entry.getKey();
+			size += entry.getValue();
+			result = entry.getKey() - 1;
+		}
+		return Math.max(0L, result);
+	}
+
+	/**
+	 * Replaces the terms of the given kernel clause by variables, as their
+	 * modes prescribe.
+	 */
+	private Clause generalise(Clause clause) {
+		Map<Term, Variable> map = new HashMap<>();
+		Clause.Builder builder = new Clause.Builder();
+		Atom atom = clause.getHead();
+		for (ModeH mode : problem.getModeHs()) {
+			Scheme scheme = mode.getScheme();
+			if (SchemeTerm.subsumes(scheme, atom, facts))
+				builder.setHead((Atom) scheme.generalises(atom, map));
+		}
+		for (Literal literal : clause.getBody()) {
+			atom = literal.getAtom();
+			for (ModeB mode : problem.getModeBs()) {
+				Scheme scheme = mode.getScheme();
+				if (SchemeTerm.subsumes(scheme, atom, facts))
+					builder.addLiteral(new Literal.Builder((Atom) scheme.generalises(atom, map)).setNegated(literal.isNegated())
+							.setLevel(literal.getLevel()).build());
+			}
+		}
+		Clause related = relate(builder.build());
+		Clause result = Subsumption.reduce(related);
+		redundant.addAndGet(related.getSize() - result.getSize());
+		return result;
+	}
+
+	/**
+	 * Removes from the given generalised clause the body literals that no
+	 * chain of shared variables links to the head, as long as the background
+	 * alone settles their predicates: they held when the kernel was built and
+	 * hold whatever the hypothesis, so they could only add to its cost.
+	 *
+	 * A literal is kept anyway when it is the last one left of a level that
+	 * some kept literal is above.
+	 */
+	private Clause relate(Clause clause) {
+		Literal[] body = clause.getBody();
+		Set<String> unsettled = problem.getUnsettled();
+		Set<Variable> linked = new HashSet<>(Arrays.asList(clause.getHead().getVariables()));
+		boolean[] kept = new boolean[body.length];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			int top = 0;
+			Set<Integer> levels = new HashSet<>();
+			for (int i = 0; i < body.length; i++) {
+				Literal literal = body[i];
+				if (!kept[i]) {
+					boolean link = unsettled.contains(literal.getAtom().getIdentifier());
+					for (Variable variable : literal.getVariables())
+						link |= linked.contains(variable);
+					if (link) {
+						linked.addAll(Arrays.asList(literal.getVariables()));
+						kept[i] = changed = true;
+					}
+				}
+				if (kept[i]) {
+					top = Math.max(top, literal.getLevel());
+					levels.add(literal.getLevel());
+				}
+			}
+			for (int i = 0; i < body.length; i++)
+				if (!kept[i] && body[i].getLevel() < top && levels.add(body[i].getLevel())) {
+					linked.addAll(Arrays.asList(body[i].getVariables()));
+					kept[i] = changed = true;
+				}
+		}
+		Clause.Builder builder = new Clause.Builder().setHead(clause.getHead());
+		int removed = 0;
+		for (int i = 0; i < body.length; i++)
+			if (kept[i])
+				builder.addLiteral(body[i]);
+			else
+				removed += 1;
+		if (0 == removed)
+			return clause;
+		unrelated.addAndGet(removed);
+		return builder.build();
+	}
+
+	/**
+	 * Returns the key under which the support of the given literal is
+	 * counted: the literal alone, in canonical form, so that literals equal
+	 * but for the names of their variables are counted together.
+	 */
+	private static Clause key(Literal literal) {
+		return new Clause.Builder().addLiteral(literal).build();
+	}
+
+	/**
+	 * Tells which body literals of the given clause are supported by more
+	 * clauses than the given threshold. The best supported literal of a level
+	 * left empty is kept anyway when a kept literal is above, so that levels
+	 * stay contiguous.
+	 */
+	private static boolean[] keep(Clause clause, Map<Clause, Integer> supports, int threshold) {
+		Literal[] body = clause.getBody();
+		boolean[] result = new boolean[body.length];
+		int top = 0;
+		Set<Integer> levels = new HashSet<>();
+		for (int i = 0; i < body.length; i++)
+			if (supports.get(key(body[i])) > threshold) {
+				result[i] = true;
+				top = Math.max(top, body[i].getLevel());
+				levels.add(body[i].getLevel());
+			}
+		for (int level = 1; level < top; level++)
+			if (!levels.contains(level)) {
+				int best = -1;
+				for (int i = 0; i < body.length; i++)
+					if (body[i].getLevel() == level && (best < 0 || supports.get(key(body[i])) > supports.get(key(body[best]))))
+						best = i;
+				if (best >= 0)
+					result[best] = true;
+			}
+		return result;
+	}
+
+	/**
+	 * Counts the heads and the body literals of the given clauses, skipping
+	 * the literals not kept with the given threshold, if supports are given.
+	 */
+	private static long size(Collection<Clause> clauses, Map<Clause, Integer> supports, int threshold) {
+		long result = 0L;
+		for (Clause clause : clauses) {
+			result += 1;
+			if (null == supports)
+				result += clause.getSize();
+			else
+				for (boolean kept : keep(clause, supports, threshold))
+					if (kept)
+						result += 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Removes from the given clauses the body literals supported by fewer
+	 * clauses, counted with their support, until the literals fit the given
+	 * budget. Clauses made equal are merged.
+	 */
+	static Map<Clause, Integer> thin(Map<Clause, Integer> gmap, long budget, boolean mute) {
+		if (gmap.size() > budget) {
+			Logger.warning(mute, String.format("%d clauses cannot fit %d literals (--fit,-F)", gmap.size(), budget));
+			return gmap;
+		}
+		Map<Clause, Integer> supports = new HashMap<>();
+		for (Map.Entry<Clause, Integer> entry : gmap.entrySet())
+			for (Literal literal : entry.getKey().getBody())
+				supports.merge(key(literal), entry.getValue(), Integer::sum);
+		int threshold = -1;
+		for (Integer candidate : new TreeSet<>(supports.values())) {
+			threshold = candidate;
+			if (size(gmap.keySet(), supports, threshold) <= budget)
+				break;
+		}
+		Map<Clause, Integer> result = new LinkedHashMap<>();
+		int removed = 0;
+		for (Map.Entry<Clause, Integer> entry : gmap.entrySet()) {
+			Clause.Builder builder = new Clause.Builder().setHead(entry.getKey().getHead());
+			Literal[] body = entry.getKey().getBody();
+			boolean[] kept = keep(entry.getKey(), supports, threshold);
+			for (int i = 0; i < body.length; i++)
+				if (kept[i])
+					builder.addLiteral(body[i]);
+				else
+					removed += 1;
+			result.merge(builder.build(), entry.getValue(), Integer::sum);
+		}
+		Logger.message(String.format("Fitting %d literals: literal support threshold %d removed %d literals", budget, threshold, removed));
+		return result;
+	}
+
 	public final Clause[] getGeneralisation() {
 		if (null == generalisation) {
       //Logger.message("getGeneralization");
-			Map<Clause,Integer> gmap = new HashMap<>();
+			// clauses are in canonical form, so variants are counted together
+			Map<Clause, Integer> gmap = new LinkedHashMap<>();
 			Integer largestSupport = 0;
-			for (Clause clause : getKernel()) {
-				Map<Term, Variable> map = new HashMap<>();
-				Clause.Builder builder = new Clause.Builder();
-				Atom atom = clause.getHead();
-				for (ModeH mode : problem.getModeHs()) {
-					Scheme scheme = mode.getScheme();
-					if (SchemeTerm.subsumes(scheme, atom, facts))
-						builder.setHead((Atom) scheme.generalises(atom, map));
+			Clause[] clauses = getKernel();
+			if (config.getJobs() > 1 && clauses.length > 1) {
+				Map<Clause, Integer> supports = new ConcurrentHashMap<>();
+				List<Clause> generalised;
+				try {
+					// the stream is ordered, so clauses are first seen in the order of the kernel
+					generalised = problem.getPool().submit(() -> Arrays.stream(clauses).parallel() //
+							.map(clause -> {
+								Clause genClause = generalise(clause);
+								supports.merge(genClause, 1, Integer::sum);
+								return genClause;
+							}).collect(Collectors.toList())).get();
+				} catch (InterruptedException | ExecutionException e) {
+					Logger.error("cannot build the generalisation: " + e.getMessage());
+					generalised = Collections.emptyList();
 				}
-				for (Literal literal : clause.getBody()) {
-					atom = literal.getAtom();
-					for (ModeB mode : problem.getModeBs()) {
-						Scheme scheme = mode.getScheme();
-						if (SchemeTerm.subsumes(scheme, atom, facts))
-							builder.addLiteral(new Literal.Builder((Atom) scheme.generalises(atom, map)).setNegated(literal.isNegated())
-									.setLevel(literal.getLevel()).build());
+				for (Clause genClause : generalised)
+					if (!gmap.containsKey(genClause)) {
+						Integer support = supports.get(genClause);
+						if (support > 1)
+							largestSupport = Math.max(largestSupport, support);
+						gmap.put(genClause, support);
+					}
+			} else
+				for (Clause clause : clauses) {
+					Clause genClause = generalise(clause);
+					//set.add(genClause);
+					if (gmap.containsKey(genClause)) {
+						Integer newsup = gmap.get(genClause) + 1;
+						largestSupport = Math.max(largestSupport, newsup);
+						gmap.put(genClause, newsup);
+					} else {
+					    gmap.put(genClause, 1);
 					}
 				}
-
-				Clause genClause = builder.build();
-				//set.add(genClause);
-				if (gmap.containsKey(genClause)) {
-					Integer newsup = gmap.get(genClause) + 1;
-					largestSupport = Math.max(largestSupport, newsup);
-					gmap.put(genClause, newsup);
-				} else {
-				    gmap.put(genClause, 1);
-				}
+			if (unrelated.get() > 0)
+				Logger.message(String.format("Relevance removed %d kernel literals unrelated to their heads", unrelated.get()));
+			// clauses that are part of larger ones add no hypothesis
+			int size = gmap.size();
+			gmap = Subsumption.compact(gmap);
+			if (gmap.size() < size || redundant.get() > 0) {
+				largestSupport = 0;
+				for (Integer support : gmap.values())
+					if (support > 1)
+						largestSupport = Math.max(largestSupport, support);
+				Logger.message(String.format("Subsumption removed %d generalisations and %d redundant literals", size - gmap.size(), redundant.get()));
+			}
+			long prune = problem.getConfig().getPrune();
+			long threshold = 0L;
+			if (config.getFit() > 0L) {
+				// the adaptive threshold only considers what the fixed one keeps
+				Map<Clause, Integer> kept = new LinkedHashMap<>(gmap);
+				if (largestSupport > 2 * prune)
+					kept.values().removeIf(support -> support <= prune);
+				threshold = fit(kept, config.getFit(), config.isFitLiterals());
 			}
-			Iterator it = gmap.entrySet().iterator();
+			int removed = 0;
+			Iterator<Map.Entry<Clause, Integer>> it = gmap.entrySet().iterator();
 			while(it.hasNext()) {
-				Map.Entry<Clause, Integer> entry = (Map.Entry<Clause, Integer>)it.next();
+				Map.Entry<Clause, Integer> entry = it.next();
 				String msg = "";
-				long prune = problem.getConfig().getPrune();
 				if (largestSupport > 2*prune && entry.getValue() <= prune) {
 					// erase those generalization clauses that have less than "prune" supporting instances
 					// but only if the largest support is higher than 2*prune (to avoid pruning (nearly) everything)
 					// (if prune = 0 this does not prune anything)
 					it.remove();
 					msg = " (pruned)";
+				} else if (entry.getValue() <= threshold) {
+					// erase those below the threshold fitting the budget (--fit,-F)
+					it.remove();
+					msg = " (pruned)";
+					removed += 1;
 				}
 				Logger.message(String.format("Generalization %2d support for %s%s", entry.getValue(), entry.getKey(), msg));
 			}
+			if (config.getFit() > 0L) {
+				Logger.message(String.format("Fitting %d %s: support threshold %d removed %d clauses", config.getFit(),
+						config.isFitLiterals() ? "literals" : "clauses", threshold, removed));
+				if (config.isFitLiterals() && size(gmap.keySet(), null, 0) > config.getFit())
+					gmap = thin(gmap, config.getFit(), config.isMute());
+				else if (!config.isFitLiterals() && gmap.size() > config.getFit())
+					Logger.warning(config.isMute(), String.format("%d clauses of equal support cannot fit %d clauses (--fit,-F)", gmap.size(), config.getFit()));
+			}
 			generalisation = gmap.keySet().toArray(new Clause[gmap.size()]);
 		}
 		return generalisation;
@@ -413,56 +1004,49 @@ public class Grounding implements Solvable {
 	public final Clause[] getKernel() {
 		if (null == kernel) {
 			//Logger.message("getKernel");
-			Set<Clause> set = new LinkedHashSet<>();
+			List<Map.Entry<Atom, ModeH>> pairs = new ArrayList<>();
 			for (Atom alpha : delta)
-				for (ModeH head : problem.getModeHs()) {
-					Scheme scheme = head.getScheme();
-					if (SchemeTerm.subsumes(scheme, alpha, facts)) {
-						Clause.Builder builder = new Clause.Builder().setHead(//
-								new Atom.Builder(alpha).setWeight(head.getWeigth()).setPriority(head.getPriority()).build());
-
-						Collection<Term> substitutes = SchemeTerm.findSubstitutes(scheme, alpha);
-						if (null != substitutes) {
-							int level = 0;
-							Set<Term> usables = new HashSet<>(substitutes);
-							Set<Term> used = new HashSet<Term>();
-							Set<Term> next = new HashSet<Term>();
-							while (!usables.isEmpty()) {
-								level += 1;
-								for (ModeB mode : problem.getModeBs()) {
-									scheme = mode.getScheme();
-									if (mode.isNegated()) {
-										Map<Atom, Collection<Term>> found = SchemeTerm.generateAndOutput(scheme, usables, table, facts);
-										for (Atom atom : found.keySet()) {
-											builder.addLiteral(new Literal.Builder( //
-													new Atom.Builder(atom).setWeight(mode.getWeigth()).setPriority(mode.getPriority()).build() //
-											).setNegated(mode.isNegated()).setLevel(level).build());
-											next.addAll(found.get(atom));
-										}
-									} else {
-										Map.Entry<Collection<Atom>, Collection<Term>> found = SchemeTerm.matchAndOutput(scheme, table.get(scheme), usables);
-										for (Atom atom : found.getKey())
-											builder.addLiteral(new Literal.Builder( //
-													new Atom.Builder(atom).setWeight(mode.getWeigth()).setPriority(mode.getPriority()).build() //
-											).setNegated(mode.isNegated()).setLevel(level).build());
-										next.addAll(found.getValue());
-									}
-								}
-								used.addAll(usables);
-								next.removeAll(used);
-								usables.clear();
-								usables.addAll(next);
-								next.clear();
-							}
-						}
-						set.add(builder.build());
-					}
+				for (ModeH head : problem.getModeHs())
+					pairs.add(new SimpleEntry<>(alpha, head));
+			List<Trace> traces;
+			if (config.getJobs() > 1 && pairs.size() > 1)
+				try {
+					// the stream is ordered, so clauses are collected in the order of the pairs
+					traces = problem.getPool().submit(() -> pairs.parallelStream() //
+							.map(pair -> saturate(pair.getKey(), pair.getValue())) //
+							.collect(Collectors.toList())).get();
+				} catch (InterruptedException | ExecutionException e) {
+					Logger.error("cannot build the kernel: " + e.getMessage());
+					traces = Collections.emptyList();
 				}
+			else {
+				traces = new ArrayList<>(pairs.size());
+				for (Map.Entry<Atom, ModeH> pair : pairs)
+					traces.add(saturate(pair.getKey(), pair.getValue()));
+			}
+			Set<Clause> set = new LinkedHashSet<>();
+			limits = EnumSet.noneOf(Limit.class);
+			for (Trace trace : traces) {
+				if (null != trace.getClause())
+					set.add(trace.getClause());
+				limits.addAll(trace.getLimits());
+			}
+			for (Limit limit : limits)
+				Logger.warning(config.isMute(), String.format("kernel saturation stopped by the %s limit (%s)", limit, limit.getOption()));
 			kernel = set.toArray(new Clause[set.size()]);
 		}
 		return kernel;
 	}
 
+	/**
+	 * Returns the limits that cut the saturation of some clause of the kernel
+	 * short.
+	 */
+	public final Set<Limit> getLimits() {
+		getKernel();
+		return Collections.unmodifiableSet(limits);
+	}
+
 	public final ModeB[] getModeBs() {
 		return problem.getModeBs();
 	}
@@ -471,8 +1055,13 @@ public class Grounding implements Solvable {
 		return problem.getModeHs();
 	}
 
+	/**
+	 * Returns the displayed atoms of the model, sorted.
+	 */
 	public final Atom[] getModel() {
-		return model;
+		Atom[] result = model.toArray(new Atom[model.size()]);
+		Arrays.sort(result);
+		return result;
 	}
 
 	public final Problem getProblem() {
@@ -524,7 +1113,7 @@ public class Grounding implements Solvable {
 		result = prime * result + ((facts == null) ? 0 : facts.hashCode());
 		result = prime * result + Arrays.hashCode(generalisation);
 		result = prime * result + Arrays.hashCode(kernel);
-		result = prime * result + Arrays.hashCode(model);
+		result = prime * result + model.hashCode();
 		result = prime * result + ((table == null) ? 0 : table.hashCode());
 		result = prime * result + ((problem == null) ? 0 : problem.hashCode());
 		result = prime * result + Arrays.hashCode(uncovered);
@@ -536,7 +1125,7 @@ public class Grounding implements Solvable {
 	}
 
 	public final boolean hasModel() {
-		return model.length > 0;
+		return !model.isEmpty();
 	}
 
 	public final boolean hasModes() {
@@ -557,6 +1146,135 @@ public class Grounding implements Solvable {
 		return getGeneralisation().length > 0;
 	}
 
+	/**
+	 * Saturates the kernel clause of the given delta atom and head mode, whose
+	 * trace holds the clause, or <code>null</code> if the atom is not an
+	 * instance of the mode, and the limits that cut it short.
+	 *
+	 * The trace is taken from earlier saturations of the same pair when this
+	 * grounding replays it.
+	 */
+	private Trace saturate(Atom alpha, ModeH head) {
+		Map.Entry<Atom, ModeH> key = new SimpleEntry<>(alpha, head);
+		Trace[] traces = problem.getTraces().get(key);
+		if (null != traces)
+			for (Trace trace : traces)
+				if (trace.replays(facts, table))
+					return trace;
+		Trace trace = new Trace(facts, table);
+		Set<Limit> limits = EnumSet.noneOf(Limit.class);
+		Clause clause = saturate(alpha, head, trace, limits);
+		if (trace.close(clause, limits))
+			problem.getTraces().add(key, trace);
+		return trace;
+	}
+
+	private Clause saturate(Atom alpha, ModeH head, Trace trace, Set<Limit> limits) {
+		Scheme scheme = head.getScheme();
+		if (!SchemeTerm.subsumes(scheme, alpha, trace))
+			return null;
+		Clause.Builder builder = new Clause.Builder().setHead(//
+				new Atom.Builder(alpha).setWeight(head.getWeigth()).setPriority(head.getPriority()).build());
+
+		Collection<Term> substitutes = SchemeTerm.findSubstitutes(scheme, alpha);
+		if (null != substitutes) {
+			int level = 0;
+			int size = 0;
+			Set<Term> usables = new HashSet<>(substitutes);
+			Set<Term> used = new HashSet<Term>();
+			Set<Term> next = new HashSet<Term>();
+			while (!usables.isEmpty()) {
+				if (config.getDepth() > 0 && level >= config.getDepth()) {
+					limits.add(Limit.DEPTH);
+					break;
+				}
+				level += 1;
+				Set<Literal> literals = new LinkedHashSet<>();
+				Map<String, Collection<Term>> frontier = new HashMap<>();
+				for (ModeB mode : problem.getModeBs()) {
+					scheme = mode.getScheme();
+					if (mode.isNegated()) {
+						Generator generator = new Generator(scheme, usables, trace.getTable(), trace);
+						for (long count = 0L; generator.hasNext(); count++) {
+							if (config.getCap() > 0L && count >= config.getCap()) {
+								// which atoms are kept depends on the order of the table
+								trace.setOpaque();
+								Logger.warning(config.isMute(), String.format("generation of '%s' stopped after %d atoms (--cap,-C)", mode, count));
+								break;
+							}
+							Map.Entry<Atom, Collection<Term>> found = generator.next();
+							literals.add(new Literal.Builder( //
+									new Atom.Builder(found.getKey()).setWeight(mode.getWeigth()).setPriority(mode.getPriority()).build() //
+							).setNegated(mode.isNegated()).setLevel(level).build());
+							next.addAll(found.getValue());
+						}
+					} else {
+						Map.Entry<Collection<Atom>, Collection<Term>> found = SchemeTerm.matchAndOutput(scheme,
+								probe(scheme, usables, frontier, trace), usables);
+						for (Atom atom : found.getKey())
+							literals.add(new Literal.Builder( //
+									new Atom.Builder(atom).setWeight(mode.getWeigth()).setPriority(mode.getPriority()).build() //
+							).setNegated(mode.isNegated()).setLevel(level).build());
+						next.addAll(found.getValue());
+					}
+				}
+				if (config.getLiterals() > 0 && size + literals.size() > config.getLiterals()) {
+					// the smallest literals of the last level are kept
+					List<Literal> sorted = new ArrayList<>(literals);
+					Collections.sort(sorted);
+					builder.addLiterals(sorted.subList(0, config.getLiterals() - size));
+					limits.add(Limit.LITERALS);
+					break;
+				}
+				builder.addLiterals(literals);
+				size += literals.size();
+				used.addAll(usables);
+				next.removeAll(used);
+				usables.clear();
+				if (config.getWidth() > 0 && next.size() > config.getWidth()) {
+					// the smallest terms are kept
+					List<Term> sorted = new ArrayList<>(next);
+					Collections.sort(sorted, Term::compare);
+					usables.addAll(sorted.subList(0, config.getWidth()));
+					limits.add(Limit.WIDTH);
+				} else
+					usables.addAll(next);
+				next.clear();
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the atoms of the part of the given scheme that may match the
+	 * usable terms: if the scheme has an input argument, only the atoms having
+	 * there one of the usable terms of the right type are selected through the
+	 * argument index of the facts, otherwise the whole part is returned. Usable
+	 * terms are split by type once per level in the frontier.
+	 */
+	private Collection<Atom> probe(Scheme scheme, Collection<Term> usables, Map<String, Collection<Term>> frontier, Trace trace) {
+		int position = SchemeTerm.findInput(scheme);
+		if (position < 0)
+			return trace.getTable().get(scheme);
+		Placemarker placemarker = (Placemarker) scheme.getTerm(position);
+		Collection<Term> terms = frontier.get(placemarker.getIdentifier());
+		if (null == terms) {
+			terms = new ArrayList<>();
+			for (Term term : usables)
+				if (SchemeTerm.subsumes(placemarker, term, trace))
+					terms.add(term);
+			frontier.put(placemarker.getIdentifier(), terms);
+		}
+		Set<Atom> part = table.get(scheme);
+		List<Atom> result = new ArrayList<>();
+		for (Term term : terms) {
+			Collection<Atom> atoms = SchemeTerm.select(scheme, part, facts, position, term);
+			trace.bucket(scheme, position, term, atoms);
+			result.addAll(atoms);
+		}
+		return result;
+	}
+
 	@Override
 	public boolean save(int iter, OutputStream stream) {
 		return Utils.save(this, iter, stream);
@@ -596,7 +1314,7 @@ public class Grounding implements Solvable {
 	@Override
 		public String toString() {
 			return "Grounding [\n  covered=" + Arrays.toString(covered) + ",\n  delta=" + Arrays.toString(delta) + ",\n  facts=" + facts + ",\n  generalisation="
-				+ Arrays.toString(generalisation) + ",\n  kernel=" + Arrays.toString(kernel) + ",\n  model=" + Arrays.toString(model) + ",\n  table=" + table
+				+ Arrays.toString(generalisation) + ",\n  kernel=" + Arrays.toString(kernel) + ",\n  model=" + Arrays.toString(getModel()) + ",\n  table=" + table
 				+ ",\n  problem=" + problem + ",\n  uncovered=" + Arrays.toString(uncovered) + "\n]";
 		}
 
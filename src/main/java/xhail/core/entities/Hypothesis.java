@@ -16,6 +16,7 @@ import org.apache.commons.collections4.iterators.ArrayIterator;
 
 import xhail.core.Buildable;
 import xhail.core.Config;
+import xhail.core.facts.FactStore;
 import xhail.core.parser.Parser;
 import xhail.core.statements.Display;
 import xhail.core.statements.Example;
@@ -36,16 +37,18 @@ public class Hypothesis implements Iterable<Atom> {
 	public static class Builder implements Buildable<Hypothesis> {
 
 		private Set<Literal> covered = new HashSet<>();
-		private Set<Atom> facts = new HashSet<>();
+		private FactStore facts;
 		private Grounding grounding;
 		private Set<Atom> literals = new HashSet<>();
-		private Set<Atom> model = new HashSet<>();
+		private FactStore model;
 
 		private Set<Literal> uncovered = new HashSet<>();
 
 		public Builder(Grounding grounding) {
 			if (null == grounding)
 				throw new IllegalArgumentException("Illegal 'grounding' argument in Hypothesis.Builder(Grounding): " + grounding);
+			this.facts = new FactStore(grounding.getProblem().getDictionary());
+			this.model = new FactStore(grounding.getProblem().getDictionary());
 			this.grounding = grounding;
 		}
 
@@ -130,7 +133,7 @@ public class Hypothesis implements Iterable<Atom> {
 
 	private final Atom[] literals;
 
-	private final Atom[] model;
+	private final FactStore model;
 
 	private final Literal[] uncovered;
 
@@ -138,10 +141,13 @@ public class Hypothesis implements Iterable<Atom> {
 		if (null == builder)
 			throw new IllegalArgumentException("Illegal 'builder' argument in Hypothesis(Hypothesis.Builder): " + builder);
 		this.covered = builder.covered.toArray(new Literal[builder.covered.size()]);
+		Arrays.sort(this.covered);
 		this.grounding = builder.grounding;
 		this.literals = builder.literals.toArray(new Atom[builder.literals.size()]);
-		this.model = builder.model.toArray(new Atom[builder.model.size()]);
+		Arrays.sort(this.literals);
+		this.model = builder.model;
 		this.uncovered = builder.uncovered.toArray(new Literal[builder.uncovered.size()]);
+		Arrays.sort(this.uncovered);
 	}
 
 	@Override
@@ -164,7 +170,7 @@ public class Hypothesis implements Iterable<Atom> {
 			return false;
 		if (!Arrays.equals(literals, other.literals))
 			return false;
-		if (!Arrays.equals(model, other.model))
+		if (!model.equals(other.model))
 			return false;
 		if (!Arrays.equals(uncovered, other.uncovered))
 			return false;
@@ -258,8 +264,13 @@ public class Hypothesis implements Iterable<Atom> {
 		return grounding.getModeHs();
 	}
 
+	/**
+	 * Returns the displayed atoms of the model, sorted.
+	 */
 	public final Atom[] getModel() {
-		return model;
+		Atom[] result = model.toArray(new Atom[model.size()]);
+		Arrays.sort(result);
+		return result;
 	}
 
 	public final Problem getProblem() {
@@ -306,7 +317,7 @@ public class Hypothesis implements Iterable<Atom> {
 		result = prime * result + Arrays.hashCode(covered);
 		result = prime * result + ((grounding == null) ? 0 : grounding.hashCode());
 		result = prime * result + Arrays.hashCode(literals);
-		result = prime * result + Arrays.hashCode(model);
+		result = prime * result + model.hashCode();
 		result = prime * result + Arrays.hashCode(uncovered);
 		return result;
 	}
@@ -320,7 +331,7 @@ public class Hypothesis implements Iterable<Atom> {
 	}
 
 	public final boolean hasModel() {
-		return model.length > 0;
+		return !model.isEmpty();
 	}
 
 	public final boolean hasModes() {
@@ -339,7 +350,7 @@ public class Hypothesis implements Iterable<Atom> {
 	@Override
 	public String toString() {
 		return "Hypothesis [\n  hypotheses=" + Arrays.toString(hypotheses) + ",\n  covered=" + Arrays.toString(covered) + ",\n  grounding=" + grounding
-				+ ",\n  literals=" + Arrays.toString(literals) + ",\n  model=" + Arrays.toString(model) + ",\n  uncovered=" + Arrays.toString(uncovered)
+				+ ",\n  literals=" + Arrays.toString(literals) + ",\n  model=" + Arrays.toString(getModel()) + ",\n  uncovered=" + Arrays.toString(uncovered)
 				+ "\n]";
 	}
 
@@ -3,31 +3,42 @@
  */
 package xhail.core.entities;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.StringUtils;
 
 import xhail.core.Buildable;
 import xhail.core.Config;
 import xhail.core.Dialler;
+import xhail.core.Emitter;
 import xhail.core.Logger;
 import xhail.core.Utils;
+import xhail.core.facts.Dictionary;
+import xhail.core.parser.Dependencies;
 import xhail.core.parser.InputStates;
 import xhail.core.parser.Parser;
+import xhail.core.parser.Source;
 import xhail.core.parser.Splitter;
 import xhail.core.statements.Display;
 import xhail.core.statements.Example;
@@ -44,6 +55,34 @@ import xhail.core.terms.Scheme;
  */
 public class Problem implements Solvable {
 
+	/**
+	 * The parts of the programs passed to the solver that do not change from
+	 * call to call, but for the background of the sources, which is copied
+	 * from the files.
+	 */
+	public static enum Segment {
+		/**
+		 * Filters, domains and background of the abduction program.
+		 */
+		BACKGROUND,
+		/**
+		 * Examples and modes of the abduction program without iterations.
+		 */
+		INFLATION,
+		/**
+		 * Examples and modes of the abduction program with iterations.
+		 */
+		ITERATION,
+		/**
+		 * Filters, domains and background of the induction program.
+		 */
+		INDUCTION,
+		/**
+		 * Examples of the induction program.
+		 */
+		EXAMPLES
+	}
+
 	public static class Builder implements Buildable<Problem> {
 
 		private Set<String> background = new LinkedHashSet<>();
@@ -62,6 +101,8 @@ public class Problem implements Solvable {
 
 		private Set<ModeH> modeHs = new LinkedHashSet<>();
 
+		private Set<Source> sources = new LinkedHashSet<>();
+
 		public Builder(Config config) {
 			if (null == config)
 				throw new IllegalArgumentException("Illegal 'config' argument in Problem.Builder(Config): " + config);
@@ -140,6 +181,7 @@ public class Problem implements Solvable {
 			this.lookup.clear();
 			this.modeBs.clear();
 			this.modeHs.clear();
+			this.sources.clear();
 			return this;
 		}
 
@@ -213,6 +255,11 @@ public class Problem implements Solvable {
 					return false;
 			} else if (!modeHs.equals(other.modeHs))
 				return false;
+			if (sources == null) {
+				if (other.sources != null)
+					return false;
+			} else if (!sources.equals(other.sources))
+				return false;
 			return true;
 		}
 
@@ -228,6 +275,7 @@ public class Problem implements Solvable {
 			result = prime * result + ((lookup == null) ? 0 : lookup.hashCode());
 			result = prime * result + ((modeBs == null) ? 0 : modeBs.hashCode());
 			result = prime * result + ((modeHs == null) ? 0 : modeHs.hashCode());
+			result = prime * result + ((sources == null) ? 0 : sources.hashCode());
 			return result;
 		}
 
@@ -242,11 +290,12 @@ public class Problem implements Solvable {
 		public Builder parse(Path path) {
 			if (null == path)
 				throw new IllegalArgumentException("Illegal 'path' argument in Problem.Builder.parse(Path): " + path);
-			try {
-				parse(new FileInputStream(path.toFile()));
-			} catch (FileNotFoundException e) {
+			if (!Files.isReadable(path))
 				Logger.error("cannot find file '" + path.getFileName().toString() + "'");
-			}
+			// the background is left in the file and copied from there
+			Source source = Source.scan(path, this::addBackground);
+			if (!source.isEmpty())
+				sources.add(source);
 			return this;
 		}
 
@@ -303,31 +352,145 @@ public class Problem implements Solvable {
 
 	private final Config config;
 
+	private final Dictionary dictionary;
+
 	private final Display[] displays;
 
 	private final String[] domains;
 
 	private final Example[] examples;
 
+	private final Collection<String> filters;
+
 	private final Map<String, Set<Integer>> lookup;
 
 	private final ModeB[] modeBs;
 
 	private final ModeH[] modeHs;
 
-	private Set<String> refinements = new HashSet<>();
+	private ForkJoinPool pool = null;
+
+	private final Set<String> refinements = new LinkedHashSet<>();
+
+	private final Source[] sources;
+
+	private final Set<String> relevant;
+
+	/**
+	 * The last rendering of each segment, with the inputs it was rendered
+	 * from.
+	 */
+	private final Map<Segment, Map.Entry<Object, byte[]>> segments = new ConcurrentHashMap<>();
+
+	private final Map<String, Set<Integer>> signatures = new HashMap<>();
+
+	private final String[] slice;
+
+	private final Set<String> unsettled;
+
+	/**
+	 * How many queries the traces kept by a problem record at most.
+	 */
+	private static final long TRACES = 1L << 20;
+
+	private final Traces traces = new Traces(TRACES);
 
 	private Problem(Builder builder) {
 		if (null == builder)
 			throw new IllegalArgumentException("Illegal 'builder' argument in Problem(Problem.Builder): " + builder);
 		this.background = builder.background.toArray(new String[builder.background.size()]);
 		this.config = builder.config;
+		this.dictionary = new Dictionary(builder.config.getScratch());
 		this.displays = builder.displays.toArray(new Display[builder.displays.size()]);
 		this.domains = builder.domains.toArray(new String[builder.domains.size()]);
 		this.examples = builder.examples.toArray(new Example[builder.examples.size()]);
 		this.lookup = builder.lookup;
 		this.modeBs = builder.modeBs.toArray(new ModeB[builder.modeBs.size()]);
 		this.modeHs = builder.modeHs.toArray(new ModeH[builder.modeHs.size()]);
+		this.sources = builder.sources.toArray(new Source[builder.sources.size()]);
+		Set<String> filters = new TreeSet<>();
+		//filters.add("#hide.");
+		filters.add("#show.");
+		// filters.add("#show display_fact/1.");
+		// filters.add("#show covered_example/2.");
+		// filters.add("#show number_abduced/1.");
+		// filters.add("#show uncovered_example/2.");
+		// // filters.add("#show use_clause_literal/2.");
+		for (Display display : displays)
+			filters.add(String.format("#show %s/%d.", display.getIdentifier(), display.getArity()));
+		for (Example example : examples)
+			filters.add(String.format("#show %s/%d.", example.getAtom().getIdentifier(), example.getAtom().getArity()));
+		for (ModeH mode : modeHs) {
+			Scheme scheme = mode.getScheme();
+			filters.add(String.format("#show %s/%d.", scheme.getIdentifier(), scheme.getArity()));
+			filters.add(String.format("#show abduced_%s/%d.", scheme.getIdentifier(), scheme.getArity()));
+			for (Placemarker placemarker : scheme.getPlacemarkers())
+				filters.add(String.format("#show %s/1.", placemarker.getIdentifier()));
+		}
+		for (ModeB mode : modeBs) {
+			Scheme scheme = mode.getScheme();
+			filters.add(String.format("#show %s/%d.", scheme.getIdentifier(), scheme.getArity()));
+			for (Placemarker placemarker : scheme.getPlacemarkers())
+				filters.add(String.format("#show %s/1.", placemarker.getIdentifier()));
+		}
+		this.filters = Collections.unmodifiableSet(filters);
+		// schemes are compiled once here and shared by all the groundings
+		for (ModeH mode : modeHs)
+			sign(mode.getScheme());
+		for (ModeB mode : modeBs)
+			sign(mode.getScheme());
+		Dependencies[] statements = new Dependencies[background.length];
+		Collection<Dependencies> dependencies = new ArrayList<>();
+		for (int i = 0; i < background.length; i++)
+			dependencies.add(statements[i] = Dependencies.of(background[i]));
+		for (Source source : sources)
+			dependencies.addAll(source.getDependencies());
+		Set<String> heads = new HashSet<>();
+		for (ModeH mode : modeHs)
+			heads.add(mode.getScheme().getIdentifier());
+		this.unsettled = Collections.unmodifiableSet(Dependencies.unsettled(dependencies, heads));
+		if (config.isUnsliced()) {
+			this.relevant = null;
+			this.slice = background;
+		} else {
+			// only what examples, modes and displays depend on is passed on
+			Set<String> roots = new HashSet<>();
+			for (Display display : displays)
+				roots.add(display.getIdentifier());
+			for (Example example : examples)
+				roots.add(example.getAtom().getIdentifier());
+			for (ModeH mode : modeHs)
+				root(mode.getScheme(), roots);
+			for (ModeB mode : modeBs)
+				root(mode.getScheme(), roots);
+			for (String domain : domains)
+				dependencies.add(Dependencies.of(domain));
+			this.relevant = Collections.unmodifiableSet(Dependencies.relevant(dependencies, roots));
+			Collection<String> slice = new ArrayList<>();
+			for (int i = 0; i < background.length; i++)
+				if (statements[i].isRelevant(relevant))
+					slice.add(background[i]);
+			this.slice = slice.toArray(new String[slice.size()]);
+		}
+	}
+
+	private static void root(Scheme scheme, Set<String> roots) {
+		roots.add(scheme.getIdentifier());
+		for (Placemarker placemarker : scheme.getPlacemarkers())
+			roots.add(placemarker.getIdentifier());
+	}
+
+	/**
+	 * Writes the background of the sources, leaving out what is not relevant.
+	 */
+	public final void emitSources(Emitter out) throws IOException {
+		if (null == out)
+			throw new IllegalArgumentException("Illegal 'out' argument in Problem.emitSources(Emitter): " + out);
+		for (Source source : sources)
+			if (null == relevant)
+				source.emit(out);
+			else
+				source.emit(out, relevant);
 	}
 
 	@Override
@@ -366,6 +529,8 @@ public class Problem implements Solvable {
 				return false;
 		} else if (!refinements.equals(other.refinements))
 			return false;
+		if (!Arrays.equals(sources, other.sources))
+			return false;
 		return true;
 	}
 
@@ -377,6 +542,10 @@ public class Problem implements Solvable {
 		return config;
 	}
 
+	public final Dictionary getDictionary() {
+		return dictionary;
+	}
+
 	public final Display[] getDisplays() {
 		return displays;
 	}
@@ -390,32 +559,7 @@ public class Problem implements Solvable {
 	}
 
 	public final Collection<String> getFilters() {
-		Set<String> result = new TreeSet<>();
-		//result.add("#hide.");
-		result.add("#show.");
-		// result.add("#show display_fact/1.");
-		// result.add("#show covered_example/2.");
-		// result.add("#show number_abduced/1.");
-		// result.add("#show uncovered_example/2.");
-		// // result.add("#show use_clause_literal/2.");
-		for (Display display : displays)
-			result.add(String.format("#show %s/%d.", display.getIdentifier(), display.getArity()));
-		for (Example example : examples)
-			result.add(String.format("#show %s/%d.", example.getAtom().getIdentifier(), example.getAtom().getArity()));
-		for (ModeH mode : modeHs) {
-			Scheme scheme = mode.getScheme();
-			result.add(String.format("#show %s/%d.", scheme.getIdentifier(), scheme.getArity()));
-			result.add(String.format("#show abduced_%s/%d.", scheme.getIdentifier(), scheme.getArity()));
-			for (Placemarker placemarker : scheme.getPlacemarkers())
-				result.add(String.format("#show %s/1.", placemarker.getIdentifier()));
-		}
-		for (ModeB mode : modeBs) {
-			Scheme scheme = mode.getScheme();
-			result.add(String.format("#show %s/%d.", scheme.getIdentifier(), scheme.getArity()));
-			for (Placemarker placemarker : scheme.getPlacemarkers())
-				result.add(String.format("#show %s/1.", placemarker.getIdentifier()));
-		}
-		return result;
+		return filters;
 	}
 
 	public final ModeB[] getModeBs() {
@@ -426,12 +570,85 @@ public class Problem implements Solvable {
 		return modeHs;
 	}
 
+	/**
+	 * Returns the pool shared by the groundings of this problem, with as many
+	 * threads as requested by <code>--jobs,-j</code>.
+	 */
+	public final synchronized ForkJoinPool getPool() {
+		if (null == pool)
+			pool = new ForkJoinPool(Math.max(1, config.getJobs()));
+		return pool;
+	}
+
+	/**
+	 * Returns the traces of the kernel clauses saturated so far by the
+	 * groundings of this problem, by delta atom and head mode.
+	 */
+	final Traces getTraces() {
+		return traces;
+	}
+
+	/**
+	 * Writes the given segment, which is rendered by the given renderer only
+	 * if the given inputs differ from the ones of its last rendering, and
+	 * copied as it is otherwise.
+	 */
+	public final void emitSegment(Segment segment, Object inputs, Supplier<byte[]> renderer, Emitter out) throws IOException {
+		if (null == segment)
+			throw new IllegalArgumentException("Illegal 'segment' argument in Problem.emitSegment(Segment, Object, Supplier<byte[]>, Emitter): " + segment);
+		if (null == inputs)
+			throw new IllegalArgumentException("Illegal 'inputs' argument in Problem.emitSegment(Segment, Object, Supplier<byte[]>, Emitter): " + inputs);
+		if (null == renderer)
+			throw new IllegalArgumentException("Illegal 'renderer' argument in Problem.emitSegment(Segment, Object, Supplier<byte[]>, Emitter): " + renderer);
+		if (null == out)
+			throw new IllegalArgumentException("Illegal 'out' argument in Problem.emitSegment(Segment, Object, Supplier<byte[]>, Emitter): " + out);
+		out.append(segments.compute(segment,
+				(key, last) -> null != last && inputs.equals(last.getKey()) ? last : new SimpleImmutableEntry<>(inputs, renderer.get())).getValue());
+	}
+
+	/**
+	 * Returns the source files whose background is copied from the files
+	 * themselves, rather than kept in {@link #getBackground()}.
+	 */
+	public final Source[] getSources() {
+		return sources;
+	}
+
+	/**
+	 * Returns the background statements that the examples, the modes or the
+	 * displays depend on, which are the only ones passed to the solver unless
+	 * <code>--unsliced,-u</code> is given.
+	 */
+	public final String[] getSlice() {
+		return slice;
+	}
+
+	/**
+	 * Returns the identifiers and arities of the atoms that saturation can
+	 * look at: the ones of the mode schemes and of their types.
+	 */
+	public final Map<String, Set<Integer>> getSignatures() {
+		return signatures;
+	}
+
+	/**
+	 * Returns the rules ruling out the abductive solutions already tried, in
+	 * the order they were found.
+	 */
 	public final Collection<String> getRefinements() {
 		return refinements;
 	}
 
+	/**
+	 * Returns the names of the predicates whose atoms may change with the
+	 * hypothesis or from an answer set of the background to another.
+	 */
+	public final Set<String> getUnsettled() {
+		return unsettled;
+	}
+
 	public final boolean hasBackground() {
-		return background.length > 0;
+		return background.length > 0 || sources.length > 0;
 	}
 
 	public final boolean hasDisplays() {
@@ -459,6 +676,7 @@ public class Problem implements Solvable {
 		result = prime * result + Arrays.hashCode(modeBs);
 		result = prime * result + Arrays.hashCode(modeHs);
 		result = prime * result + ((refinements == null) ? 0 : refinements.hashCode());
+		result = prime * result + Arrays.hashCode(sources);
 		return result;
 	}
 
@@ -488,21 +706,56 @@ public class Problem implements Solvable {
 
 	public final Answers solve() {
 		Answers.Builder builder = new Answers.Builder(config);
-		if (background.length > 0 || examples.length > 0 || modeHs.length > 0 || modeBs.length > 0) {
+		if (hasBackground() || examples.length > 0 || modeHs.length > 0 || modeBs.length > 0) {
 			int iter = 0;
-			Set<Collection<Clause>> generalisations = new HashSet<>();
+			// generalisations are kept as sets of clause identifiers
+			Map<Clause, Integer> clauses = new HashMap<>();
+			Set<BitSet> generalisations = new HashSet<>();
+			// the deltas seen so far, by fingerprint, to tell collisions apart
+			Map<Long, Collection<Set<Atom>>> fingerprints = new HashMap<>();
+			// when enumerating, a single call bounded by the first optimum
+			// finds the answers of the later iterations, one cost at a time
+			Values optimum = null;
+			Iterator<Collection<Collection<String>>> levels = null;
 			while (!builder.isMeaningful() && iter <= config.getIterations()) {
-				if (config.isDebug())
+				if (config.isDebug() && null == levels)
 					Utils.saveTemp(this, iter, Paths.get(String.format("%s_abd%d.lp", config.getName(), iter)));
+				if (null == levels && null != optimum) {
+					Dialler dialler = new Dialler.Builder(config, this).setEnumerate(optimum.raise(config.getIterations()), config.getEnumerate()).build();
+					levels = Answers.timeEnumeration(iter, dialler).values().iterator();
+				}
+				Collection<Collection<String>> answers;
+				if (null != levels) {
+					if (!levels.hasNext())
+						break;
+					answers = levels.next();
+				} else {
+					Dialler dialler = new Dialler.Builder(config, this).build();
+					Map.Entry<Values, Collection<Collection<String>>> entry = Answers.timeAbduction(iter, dialler);
+					answers = entry.getValue();
+					if (config.isEnumerate() && !answers.isEmpty())
+						optimum = entry.getKey();
+				}
 
 				int iit = 0;
 				Values values = new Values();
-				Dialler dialler = new Dialler.Builder(config, this).build();
-				Map.Entry<Values, Collection<Collection<String>>> entry = Answers.timeAbduction(iter, dialler);
-				for (Collection<String> output : entry.getValue()) {
+				Grounding base = share(answers);
+				for (Collection<String> output : answers) {
 					if (builder.size() > 0 && config.isTerminate())
 						break;
-					Grounding grounding = Answers.timeDeduction(this, output);
+					Grounding grounding = null == base ? Answers.timeDeduction(this, output) : Answers.timeDeduction(this, base, output);
+					// answers with the same fingerprint and delta have the same generalisation
+					Set<Atom> delta = new HashSet<>(Arrays.asList(grounding.getDelta()));
+					Collection<Set<Atom>> deltas = fingerprints.computeIfAbsent(grounding.getFingerprint(), key -> new ArrayList<>());
+					if (deltas.contains(delta)) {
+						if (config.isDebug())
+							Logger.message(String.format("*** Info  (%s): skipped Delta: %s", Logger.SIGNATURE, StringUtils.join(grounding.getDelta(), " ")));
+						continue;
+					}
+					if (!deltas.isEmpty() && config.isDebug())
+						Logger.message(String.format("*** Info  (%s): fingerprint collision on Delta: %s", Logger.SIGNATURE, StringUtils.join(grounding.getDelta(), " ")));
+					deltas.add(delta);
+					Answers.timeDeduction(grounding);
 					if (config.isDebug()) {
 						Logger.message(String.format("*** Info  (%s): found Delta: %s", Logger.SIGNATURE, StringUtils.join(grounding.getDelta(), " ")));
 						Logger.message(String.format("*** Info  (%s): found Kernel: %s", Logger.SIGNATURE, StringUtils.join(grounding.getKernel(), " ")));
@@ -510,17 +763,19 @@ public class Problem implements Solvable {
 						if (grounding.needsInduction())
 							Utils.saveTemp(grounding, iter, Paths.get(String.format("%s_abd%d_ind%d.lp", config.getName(), iter, iit++)));
 					}
-					Set<Clause> generalisation = new HashSet<Clause>();
-					Collections.addAll(generalisation, grounding.getGeneralisation());
+					BitSet generalisation = new BitSet();
+					for (Clause clause : grounding.getGeneralisation())
+						generalisation.set(clauses.computeIfAbsent(clause, key -> clauses.size()));
 					if (config.isDebug()) {
-            for(Clause c : generalisation) {
+            for(Clause c : grounding.getGeneralisation()) {
               Logger.message(String.format("*** Info  (%s): generalization clause: %s", Logger.SIGNATURE, c.toString()));
             }
           }
 					if (!generalisations.contains(generalisation)) {
 						values = grounding.solve(values, builder);
 						// always add refinements, hopefully it won't be used!
-						refinements.add(grounding.asBadSolution());
+						if (null == levels)
+							refinements.add(grounding.asBadSolution());
 						generalisations.add(generalisation);
 					}
 					count = builder.size();
@@ -535,11 +790,38 @@ public class Problem implements Solvable {
 		return builder.build();
 	}
 
+	/**
+	 * Builds a grounding out of the facts shared by all the given answers, on
+	 * top of which the grounding of each answer only stores its differences.
+	 * Returns <code>null</code> if there is nothing to share.
+	 */
+	private Grounding share(Collection<Collection<String>> answers) {
+		if (answers.size() < 2)
+			return null;
+		Set<String> common = null;
+		for (Collection<String> answer : answers)
+			if (null == common) {
+				common = new HashSet<>();
+				for (String atom : answer)
+					if (!atom.startsWith("abduced_"))
+						common.add(atom);
+			} else
+				common.retainAll(answer instanceof Set ? answer : new HashSet<>(answer));
+		return common.isEmpty() ? null : Answers.timeDeduction(this, common);
+	}
+
+	private void sign(Scheme scheme) {
+		scheme.getMatcher();
+		signatures.computeIfAbsent(scheme.getIdentifier(), key -> new HashSet<>()).add(scheme.getArity());
+		for (Placemarker placemarker : scheme.getPlacemarkers())
+			signatures.computeIfAbsent(placemarker.getIdentifier(), key -> new HashSet<>()).add(1);
+	}
+
 	@Override
 	public String toString() {
 		return "Problem [\n  background=" + Arrays.toString(background) + ",\n  config=" + config + ",\n  displays=" + Arrays.toString(displays)
 				+ ",\n  domains=" + Arrays.toString(domains) + ",\n  examples=" + Arrays.toString(examples) + ",\n  modeBs=" + Arrays.toString(modeBs)
-				+ ",\n  modeHs=" + Arrays.toString(modeHs) + "\n]";
+				+ ",\n  modeHs=" + Arrays.toString(modeHs) + ",\n  sources=" + Arrays.toString(sources) + "\n]";
 	}
 
 }
@@ -0,0 +1,370 @@
+/**
+ *
+ */
+package xhail.core.entities;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import xhail.core.entities.Grounding.Limit;
+import xhail.core.facts.Dictionary;
+import xhail.core.facts.Facts;
+import xhail.core.terms.Atom;
+import xhail.core.terms.Clause;
+import xhail.core.terms.Scheme;
+import xhail.core.terms.SchemeTerm;
+import xhail.core.terms.Term;
+
+/**
+ * Records the queries the saturation of a kernel clause makes to the facts and
+ * to the lookup table of a grounding, together with their answers: the sets
+ * of atoms found are kept as their size and a hash of their contents.
+ *
+ * Saturation only depends on these answers, so once the trace is closed the
+ * clause can be reused by any grounding that gives the same answers to the
+ * same queries, which is checked by replaying them.
+ *
+ * @author stefano
+ *
+ */
+class Trace extends AbstractSet<Atom> implements Facts {
+
+	private static final int ATOM = 0;
+
+	private static final int BUCKET = 1;
+
+	private static final int ENTRY = 2;
+
+	private static final int FACT = 3;
+
+	/**
+	 * Traces with more queries than this are not worth keeping.
+	 */
+	private static final int LIMIT = 1 << 16;
+
+	private static final int TUPLE = 4;
+
+	private static class Query {
+
+		private final String identifier;
+
+		private final Object key;
+
+		private final int kind;
+
+		private final int position;
+
+		private Query(int kind, String identifier, Object key, int position) {
+			this.identifier = identifier;
+			this.key = key;
+			this.kind = kind;
+			this.position = position;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Query))
+				return false;
+			Query other = (Query) obj;
+			return kind == other.kind && position == other.position && Objects.equals(identifier, other.identifier)
+					&& Objects.deepEquals(key, other.key);
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + kind;
+			result = prime * result + position;
+			result = prime * result + Objects.hashCode(identifier);
+			result = prime * result + (key instanceof Object[] ? Arrays.hashCode((Object[]) key) : Objects.hashCode(key));
+			return result;
+		}
+
+	}
+
+	private Map<Query, Object> answers = new LinkedHashMap<>();
+
+	private Clause clause = null;
+
+	private Facts facts;
+
+	private Set<Limit> limits = Collections.emptySet();
+
+	private boolean opaque = false;
+
+	private Map<SchemeTerm, Set<Atom>> table;
+
+	private final Map<SchemeTerm, Set<Atom>> view = new AbstractMap<SchemeTerm, Set<Atom>>() {
+
+		@Override
+		public boolean containsKey(Object key) {
+			return null != get(key);
+		}
+
+		@Override
+		public Set<Map.Entry<SchemeTerm, Set<Atom>>> entrySet() {
+			opaque = true;
+			return table.entrySet();
+		}
+
+		@Override
+		public Set<Atom> get(Object key) {
+			Set<Atom> result = table.get(key);
+			if (!(key instanceof SchemeTerm))
+				opaque = true;
+			else if (!isRecorded(new Query(ENTRY, null, key, 0)))
+				record(new Query(ENTRY, null, key, 0), null == result ? null : digest(result));
+			return result;
+		}
+
+	};
+
+	public Trace(Facts facts, Map<SchemeTerm, Set<Atom>> table) {
+		if (null == facts)
+			throw new IllegalArgumentException("Illegal 'facts' argument in Trace(Facts, Map<SchemeTerm, Set<Atom>>): " + facts);
+		if (null == table)
+			throw new IllegalArgumentException("Illegal 'table' argument in Trace(Facts, Map<SchemeTerm, Set<Atom>>): " + table);
+		this.facts = facts;
+		this.table = table;
+	}
+
+	/**
+	 * Records the atoms of the part of the given scheme found by probing the
+	 * argument index of the facts on the given position with the given term.
+	 */
+	public final void bucket(Scheme scheme, int position, Term term, Collection<Atom> atoms) {
+		if (null == scheme)
+			throw new IllegalArgumentException("Illegal 'scheme' argument in Trace.bucket(Scheme, int, Term, Collection<Atom>): " + scheme);
+		if (null == term)
+			throw new IllegalArgumentException("Illegal 'term' argument in Trace.bucket(Scheme, int, Term, Collection<Atom>): " + term);
+		Query query = new Query(BUCKET, null, new Object[] { scheme, term }, position);
+		if (!isRecorded(query))
+			record(query, digest(atoms));
+	}
+
+	/**
+	 * Stops recording and stores the clause the queries led to, with the limits
+	 * that cut it short, dropping any reference to the grounding.
+	 *
+	 * @return <code>true</code> if the trace can be replayed
+	 */
+	public final boolean close(Clause clause, Set<Limit> limits) {
+		if (null == limits)
+			throw new IllegalArgumentException("Illegal 'limits' argument in Trace.close(Clause, Set<Limit>): " + limits);
+		this.clause = clause;
+		this.limits = limits;
+		this.facts = null;
+		this.table = null;
+		if (opaque)
+			answers = null;
+		return !opaque;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		boolean result = facts.contains(o);
+		record(new Query(ATOM, null, o, 0), result);
+		return result;
+	}
+
+	@Override
+	public boolean contains(String identifier, Term term) {
+		boolean result = facts.contains(identifier, term);
+		record(new Query(FACT, identifier, term, 0), result);
+		return result;
+	}
+
+	@Override
+	public boolean contains(String identifier, Term[] terms) {
+		boolean result = facts.contains(identifier, terms);
+		record(new Query(TUPLE, identifier, terms.clone(), 0), result);
+		return result;
+	}
+
+	/**
+	 * Returns the clause saturated from the recorded queries, which is
+	 * <code>null</code> when no clause was built.
+	 */
+	public final Clause getClause() {
+		return clause;
+	}
+
+	public final Set<Limit> getLimits() {
+		return limits;
+	}
+
+	@Override
+	public Dictionary getDictionary() {
+		return facts.getDictionary();
+	}
+
+	/**
+	 * Returns a view of the table of the grounding that records the entries
+	 * looked up.
+	 */
+	public final Map<SchemeTerm, Set<Atom>> getTable() {
+		return view;
+	}
+
+	@Override
+	public Iterator<Atom> iterator() {
+		opaque = true;
+		return facts.iterator();
+	}
+
+	private boolean isRecorded(Query query) {
+		return opaque || answers.containsKey(query);
+	}
+
+	/**
+	 * Returns the size of the given atoms and the sum of their hashes, which
+	 * stand for the atoms when replaying.
+	 */
+	private static long[] digest(Collection<Atom> atoms) {
+		long hash = 0L;
+		if (null != atoms)
+			for (Atom atom : atoms)
+				hash += hash(atom);
+		return new long[] { null == atoms ? 0 : atoms.size(), hash };
+	}
+
+	/**
+	 * Returns the number of queries recorded.
+	 */
+	public final int getWeight() {
+		return null == answers ? 0 : answers.size();
+	}
+
+	/**
+	 * Hashes the given term on 64 bits, mixing each component as the finaliser
+	 * of MurmurHash3 does.
+	 */
+	private static long hash(Term term) {
+		long result;
+		if (term instanceof Atom) {
+			Atom atom = (Atom) term;
+			result = mix(atom.getIdentifier().hashCode());
+			for (Term nested : atom.getTerms())
+				result = mix(0x9e3779b97f4a7c15L * result + hash(nested));
+		} else
+			result = mix(0x632be59bd9b4e019L ^ term.hashCode());
+		return result;
+	}
+
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	private void record(Query query, Object answer) {
+		if (opaque)
+			return;
+		answers.putIfAbsent(query, answer);
+		if (answers.size() > LIMIT) {
+			opaque = true;
+			answers.clear();
+		}
+	}
+
+	/**
+	 * Checks whether the given grounding answers all the recorded queries as
+	 * they were answered when the trace was recorded.
+	 *
+	 * @param facts
+	 *            the facts of the grounding
+	 * @param table
+	 *            the lookup table of the grounding
+	 * @return <code>true</code> if the clause of this trace is the one the
+	 *         grounding would saturate
+	 */
+	public final boolean replays(Facts facts, Map<SchemeTerm, Set<Atom>> table) {
+		if (null == facts)
+			throw new IllegalArgumentException("Illegal 'facts' argument in Trace.replays(Facts, Map<SchemeTerm, Set<Atom>>): " + facts);
+		if (null == table)
+			throw new IllegalArgumentException("Illegal 'table' argument in Trace.replays(Facts, Map<SchemeTerm, Set<Atom>>): " + table);
+		if (null == answers)
+			return false;
+		for (Map.Entry<Query, Object> entry : answers.entrySet()) {
+			Query query = entry.getKey();
+			Object answer = entry.getValue();
+			switch (query.kind) {
+			case ATOM:
+				if (facts.contains(query.key) != (Boolean) answer)
+					return false;
+				break;
+			case FACT:
+				if (facts.contains(query.identifier, (Term) query.key) != (Boolean) answer)
+					return false;
+				break;
+			case TUPLE:
+				if (facts.contains(query.identifier, (Term[]) query.key) != (Boolean) answer)
+					return false;
+				break;
+			case ENTRY: {
+				Set<Atom> current = table.get(query.key);
+				if (null == current || null == answer) {
+					if (null != current || null != answer)
+						return false;
+				} else if (!Arrays.equals((long[]) answer, digest(current)))
+					return false;
+				break;
+			}
+			case BUCKET: {
+				Scheme scheme = (Scheme) ((Object[]) query.key)[0];
+				Term term = (Term) ((Object[]) query.key)[1];
+				Set<Atom> part = table.get(scheme);
+				if (null == part)
+					return false;
+				Collection<Atom> atoms = SchemeTerm.select(scheme, part, facts, query.position, term);
+				if (!Arrays.equals((long[]) answer, digest(atoms)))
+					return false;
+				break;
+			}
+			default:
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Collection<Atom> select(String identifier, int arity) {
+		opaque = true;
+		return facts.select(identifier, arity);
+	}
+
+	@Override
+	public Collection<Atom> select(String identifier, int arity, int position, Term term) {
+		opaque = true;
+		return facts.select(identifier, arity, position, term);
+	}
+
+	/**
+	 * Marks the trace as depending on more than the recorded queries, as when
+	 * saturation is cut short in an order that replaying cannot check.
+	 */
+	public final void setOpaque() {
+		opaque = true;
+	}
+
+	@Override
+	public int size() {
+		opaque = true;
+		return facts.size();
+	}
+
+}
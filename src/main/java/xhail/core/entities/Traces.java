@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package xhail.core.entities;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import xhail.core.statements.ModeH;
+import xhail.core.terms.Atom;
+
+/**
+ * The traces of the kernel clauses saturated so far, by delta atom and head
+ * mode, with the most recent first.
+ *
+ * The traces are bounded both per pair and overall, by the number of queries
+ * they record: when the budget is exceeded, the pairs used least recently are
+ * evicted.
+ *
+ * @author stefano
+ *
+ */
+class Traces {
+
+	/**
+	 * How many traces are kept for each pair of delta atom and head mode.
+	 */
+	private static final int TRACES = 4;
+
+	private final long budget;
+
+	private final LinkedHashMap<Map.Entry<Atom, ModeH>, Trace[]> traces = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long weight = 0L;
+
+	/**
+	 * Creates a store holding traces that record at most the given number of
+	 * queries overall.
+	 */
+	public Traces(long budget) {
+		if (budget < 0L)
+			throw new IllegalArgumentException("Illegal 'budget' argument in Traces(long): " + budget);
+		this.budget = budget;
+	}
+
+	/**
+	 * Adds the given trace in front of the ones of the given pair, dropping
+	 * the oldest of the pair beyond the limit and then the pairs used least
+	 * recently beyond the budget.
+	 */
+	public synchronized void add(Map.Entry<Atom, ModeH> key, Trace trace) {
+		if (null == key)
+			throw new IllegalArgumentException("Illegal 'key' argument in Traces.add(Map.Entry<Atom, ModeH>, Trace): " + key);
+		if (null == trace)
+			throw new IllegalArgumentException("Illegal 'trace' argument in Traces.add(Map.Entry<Atom, ModeH>, Trace): " + trace);
+		Trace[] older = traces.get(key);
+		Trace[] result = new Trace[null == older ? 1 : Math.min(TRACES, older.length + 1)];
+		result[0] = trace;
+		if (null != older) {
+			System.arraycopy(older, 0, result, 1, result.length - 1);
+			weight -= weigh(older);
+		}
+		traces.put(key, result);
+		weight += weigh(result);
+		Iterator<Trace[]> iterator = traces.values().iterator();
+		while (weight > budget && iterator.hasNext()) {
+			weight -= weigh(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Returns the traces of the given pair, or <code>null</code> if none.
+	 */
+	public synchronized Trace[] get(Map.Entry<Atom, ModeH> key) {
+		return traces.get(key);
+	}
+
+	public synchronized int size() {
+		return traces.size();
+	}
+
+	private static long weigh(Trace[] traces) {
+		long result = 0L;
+		for (Trace trace : traces)
+			result += 1 + trace.getWeight();
+		return result;
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+}
@@ -90,6 +90,19 @@ public class Values implements Comparable<Values> {
 		return source.equals(values);
 	}
 
+	/**
+	 * Returns these values with the last, least significant, one raised by
+	 * the given slack.
+	 */
+	public final Values raise(int slack) {
+		if (slack < 0)
+			throw new IllegalArgumentException("Illegal 'slack' argument in Values.raise(int): " + slack);
+		String result = "";
+		for (int i = 0; i < values.length; i++)
+			result += (i > 0 ? " " : "") + (i < values.length - 1 ? values[i] : values[i] + slack);
+		return new Values(result);
+	}
+
 	public final int size() {
 		return values.length;
 	}
@@ -0,0 +1,421 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import xhail.core.terms.Atom;
+import xhail.core.terms.Number;
+import xhail.core.terms.Quotation;
+import xhail.core.terms.Term;
+
+/**
+ * Encodes predicates (identifier and arity) and ground terms into dense
+ * integer identifiers, so that facts can be stored as tuples of integers.
+ * Identifiers are stable for the whole life of the dictionary, which is
+ * usually shared by all the groundings of a problem.
+ *
+ * When a scratch directory is given, the ground terms are stored as records
+ * of integers (a tag, the characters of the identifier or quotation and the
+ * identifiers of the arguments) in a memory-mapped {@link Scratch} file, which
+ * also backs the fact stores using the dictionary, and only a small cache of
+ * decoded terms stays on the heap.
+ *
+ * Encoding is not thread-safe, decoding can be performed concurrently once
+ * no more symbols are added.
+ *
+ * @author stefano
+ *
+ */
+public class Dictionary {
+
+	private static final class Decoded {
+
+		private final int id;
+
+		private final Term term;
+
+		private Decoded(int id, Term term) {
+			this.id = id;
+			this.term = term;
+		}
+
+	}
+
+	private static final int ATOM = 2;
+
+	private static final int CACHE = 1 << 12;
+
+	private static final int NUMBER = 0;
+
+	private static final int QUOTATION = 1;
+
+	private int[] arities = new int[16];
+
+	private final Decoded[] cache;
+
+	private String[] identifiers = new String[16];
+
+	/**
+	 * The offsets plus one of the records of the terms, by identifier, or 0
+	 * for the terms kept on the heap.
+	 */
+	private Ints offsets;
+
+	/**
+	 * The terms that cannot be stored as records, by identifier.
+	 */
+	private final Map<Integer, Term> others = new HashMap<>();
+
+	private final Map<String, int[]> predicates = new HashMap<>();
+
+	private int predicatesCount = 0;
+
+	private Ints records;
+
+	private final Scratch scratch;
+
+	private Ints slots;
+
+	private final Map<Term, Integer> terms = new HashMap<>();
+
+	private int termsCount = 0;
+
+	private int top = 0;
+
+	private Term[] values = new Term[64];
+
+	public Dictionary() {
+		this.cache = null;
+		this.scratch = null;
+	}
+
+	/**
+	 * Creates a dictionary whose ground terms, and the fact stores using it,
+	 * are memory-mapped from a file in the given scratch directory, or kept on
+	 * the heap if it is <code>null</code>.
+	 *
+	 * @param scratch
+	 *            the scratch directory, or <code>null</code>
+	 */
+	public Dictionary(Path scratch) {
+		if (null == scratch) {
+			this.cache = null;
+			this.scratch = null;
+		} else {
+			this.cache = new Decoded[CACHE];
+			this.scratch = new Scratch(scratch);
+			this.offsets = new MappedInts(this.scratch, 64);
+			this.records = new MappedInts(this.scratch, 256);
+			this.slots = new MappedInts(this.scratch, 64);
+		}
+	}
+
+	private static int hash(int[] record) {
+		int result = 0;
+		for (int value : record)
+			result = 31 * result + value;
+		int h = result * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Checks whether the given term can be stored as a record: numbers,
+	 * quotations and atoms with default weight and priority and no scheme
+	 * whose arguments can be stored too.
+	 */
+	private static boolean isStorable(Term term) {
+		if (term instanceof Number || term instanceof Quotation)
+			return true;
+		if (!(term instanceof Atom))
+			return false;
+		Atom atom = (Atom) term;
+		if (null != atom.getScheme() || 1 != atom.getWeight() || 1 != atom.getPriority())
+			return false;
+		for (int i = 0; i < atom.getArity(); i++)
+			if (!isStorable(atom.getTerm(i)))
+				return false;
+		return true;
+	}
+
+	private static int pack(int[] record, int from, String string) {
+		record[from++] = string.length();
+		for (int i = 0; i < string.length(); i += 2)
+			record[from++] = string.charAt(i) << 16 | (i + 1 < string.length() ? string.charAt(i + 1) : 0);
+		return from;
+	}
+
+	/**
+	 * Returns a new zero-filled storage of the given length, memory-mapped
+	 * from the scratch file of this dictionary if any.
+	 */
+	Ints allocate(int length) {
+		return null == scratch ? new HeapInts(length) : new MappedInts(scratch, length);
+	}
+
+	private Term decode(int offset) {
+		switch (records.get(offset)) {
+		case NUMBER:
+			return new Number.Builder(records.get(offset + 1)).build();
+		case QUOTATION:
+			return new Quotation.Builder(unpack(offset + 1)).build();
+		default:
+			Atom.Builder builder = new Atom.Builder(unpack(offset + 1));
+			offset += 2 + (records.get(offset + 1) + 1) / 2;
+			int arity = records.get(offset);
+			for (int i = 1; i <= arity; i++)
+				builder.addTerm(getTerm(records.get(offset + i)));
+			return builder.build();
+		}
+	}
+
+	public final int encode(String identifier, int arity) {
+		if (null == identifier)
+			throw new IllegalArgumentException("Illegal 'identifier' argument in Dictionary.encode(String, int): " + identifier);
+		if (arity < 0)
+			throw new IllegalArgumentException("Illegal 'arity' argument in Dictionary.encode(String, int): " + arity);
+		int[] ids = predicates.get(identifier);
+		if (null == ids || arity >= ids.length) {
+			int[] grown = new int[1 + arity];
+			if (null != ids)
+				System.arraycopy(ids, 0, grown, 0, ids.length);
+			ids = grown;
+			predicates.put(identifier, ids);
+		}
+		if (0 == ids[arity]) {
+			if (predicatesCount == identifiers.length) {
+				identifiers = Arrays.copyOf(identifiers, 2 * predicatesCount);
+				arities = Arrays.copyOf(arities, 2 * predicatesCount);
+			}
+			identifiers[predicatesCount] = identifier;
+			arities[predicatesCount] = arity;
+			ids[arity] = ++predicatesCount;
+		}
+		return ids[arity] - 1;
+	}
+
+	public final int encode(Term term) {
+		if (null == term)
+			throw new IllegalArgumentException("Illegal 'term' argument in Dictionary.encode(Term): " + term);
+		if (null != scratch && isStorable(term)) {
+			int[] record = record(term, true);
+			int id = find(record);
+			return id >= 0 ? id : store(record);
+		}
+		Integer id = terms.get(term);
+		if (null == id) {
+			if (null != scratch) {
+				id = termsCount++;
+				others.put(id, term);
+				index(id, 0);
+			} else {
+				if (termsCount == values.length)
+					values = Arrays.copyOf(values, 2 * termsCount);
+				values[termsCount] = term;
+				id = termsCount++;
+			}
+			terms.put(term, id);
+		}
+		return id;
+	}
+
+	private int find(int[] record) {
+		if (null == record)
+			return -1;
+		int mask = slots.length() - 1;
+		for (int slot = hash(record) & mask;; slot = (slot + 1) & mask) {
+			int found = slots.get(slot);
+			if (0 == found)
+				return -1;
+			if (matches(offsets.get(found - 1) - 1, record))
+				return found - 1;
+		}
+	}
+
+	public final int getArity(int predicate) {
+		if (predicate < 0 || predicate >= predicatesCount)
+			throw new IndexOutOfBoundsException("Illegal 'predicate' argument in Dictionary.getArity(int): " + predicate);
+		return arities[predicate];
+	}
+
+	/**
+	 * Returns the scratch file backing this dictionary, or <code>null</code>
+	 * if it is kept on the heap.
+	 */
+	Scratch getScratch() {
+		return scratch;
+	}
+
+	public final String getIdentifier(int predicate) {
+		if (predicate < 0 || predicate >= predicatesCount)
+			throw new IndexOutOfBoundsException("Illegal 'predicate' argument in Dictionary.getIdentifier(int): " + predicate);
+		return identifiers[predicate];
+	}
+
+	public final Term getTerm(int term) {
+		if (term < 0 || term >= termsCount)
+			throw new IndexOutOfBoundsException("Illegal 'term' argument in Dictionary.getTerm(int): " + term);
+		if (null == scratch)
+			return values[term];
+		if (0 == offsets.get(term))
+			return others.get(term);
+		Decoded decoded = cache[term & (CACHE - 1)];
+		if (null == decoded || decoded.id != term) {
+			decoded = new Decoded(term, decode(offsets.get(term) - 1));
+			cache[term & (CACHE - 1)] = decoded;
+		}
+		return decoded.term;
+	}
+
+	private void index(int id, int offset) {
+		if (id >= offsets.length())
+			offsets = offsets.resize(2 * offsets.length());
+		offsets.set(id, offset);
+	}
+
+	private int length(int offset) {
+		switch (records.get(offset)) {
+		case NUMBER:
+			return 2;
+		case QUOTATION:
+			return 2 + (records.get(offset + 1) + 1) / 2;
+		default:
+			int arity = offset + 2 + (records.get(offset + 1) + 1) / 2;
+			return arity - offset + 1 + records.get(arity);
+		}
+	}
+
+	/**
+	 * Returns the identifier of the given predicate without encoding it.
+	 *
+	 * @param identifier
+	 *            the name of the predicate
+	 * @param arity
+	 *            the arity of the predicate
+	 * @return the identifier of the predicate or <code>-1</code> if unknown
+	 */
+	public final int lookup(String identifier, int arity) {
+		if (null == identifier)
+			throw new IllegalArgumentException("Illegal 'identifier' argument in Dictionary.lookup(String, int): " + identifier);
+		int[] ids = predicates.get(identifier);
+		if (null == ids || arity < 0 || arity >= ids.length)
+			return -1;
+		return ids[arity] - 1;
+	}
+
+	/**
+	 * Returns the identifier of the given term without encoding it.
+	 *
+	 * @param term
+	 *            the term to look for
+	 * @return the identifier of the term or <code>-1</code> if unknown
+	 */
+	public final int lookup(Term term) {
+		if (null == term)
+			throw new IllegalArgumentException("Illegal 'term' argument in Dictionary.lookup(Term): " + term);
+		if (null != scratch && isStorable(term))
+			return find(record(term, false));
+		Integer id = terms.get(term);
+		return null == id ? -1 : id;
+	}
+
+	private boolean matches(int offset, int[] record) {
+		for (int i = 0; i < record.length; i++)
+			if (records.get(offset + i) != record[i])
+				return false;
+		return true;
+	}
+
+	public final int predicates() {
+		return predicatesCount;
+	}
+
+	/**
+	 * Builds the record of the given term, encoding its arguments if asked
+	 * to, or returns <code>null</code> if some of them is unknown.
+	 */
+	private int[] record(Term term, boolean encode) {
+		if (term instanceof Number)
+			return new int[] { NUMBER, ((Number) term).getValue() };
+		if (term instanceof Quotation) {
+			String content = ((Quotation) term).getContent();
+			int[] result = new int[2 + (content.length() + 1) / 2];
+			result[0] = QUOTATION;
+			pack(result, 1, content);
+			return result;
+		}
+		Atom atom = (Atom) term;
+		String identifier = atom.getIdentifier();
+		int[] result = new int[3 + (identifier.length() + 1) / 2 + atom.getArity()];
+		result[0] = ATOM;
+		int offset = pack(result, 1, identifier);
+		result[offset++] = atom.getArity();
+		for (int i = 0; i < atom.getArity(); i++)
+			if ((result[offset++] = encode ? encode(atom.getTerm(i)) : lookup(atom.getTerm(i))) < 0)
+				return null;
+		return result;
+	}
+
+	private void rehash(int capacity) {
+		slots = slots.reset(capacity);
+		int mask = capacity - 1;
+		for (int id = 0; id < termsCount; id++) {
+			int offset = offsets.get(id) - 1;
+			if (offset >= 0) {
+				int[] record = new int[length(offset)];
+				for (int i = 0; i < record.length; i++)
+					record[i] = records.get(offset + i);
+				int slot = hash(record) & mask;
+				while (0 != slots.get(slot))
+					slot = (slot + 1) & mask;
+				slots.set(slot, id + 1);
+			}
+		}
+	}
+
+	private int store(int[] record) {
+		if (top + record.length > records.length())
+			records = records.resize(Math.max(2 * records.length(), top + record.length));
+		int offset = top;
+		for (int value : record)
+			records.set(top++, value);
+		int id = termsCount++;
+		index(id, offset + 1);
+		if (2 * (size() + 1) > slots.length())
+			rehash(2 * slots.length());
+		int mask = slots.length() - 1;
+		int slot = hash(record) & mask;
+		while (0 != slots.get(slot))
+			slot = (slot + 1) & mask;
+		slots.set(slot, id + 1);
+		return id;
+	}
+
+	private int size() {
+		return termsCount - others.size();
+	}
+
+	public final int terms() {
+		return termsCount;
+	}
+
+	@Override
+	public String toString() {
+		return "Dictionary [predicates=" + predicatesCount + ", terms=" + termsCount + "]";
+	}
+
+	private String unpack(int offset) {
+		int length = records.get(offset);
+		char[] result = new char[length];
+		for (int i = 0; i < length; i++) {
+			int value = records.get(offset + 1 + i / 2);
+			result[i] = (char) (0 == i % 2 ? value >>> 16 : value & 0xFFFF);
+		}
+		return new String(result);
+	}
+
+}
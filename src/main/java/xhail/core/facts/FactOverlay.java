@@ -0,0 +1,195 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections4.collection.CompositeCollection;
+
+import xhail.core.terms.Atom;
+import xhail.core.terms.Term;
+
+/**
+ * A copy-on-write layer on top of a shared {@link FactStore}: the atoms added
+ * to or removed from the base are recorded by the layer only, so that many
+ * layers can share the same base at the cost of their differences. The base
+ * must not be modified while it is shared. The differences are stored like the
+ * base, in the scratch file of its dictionary if it has one.
+ *
+ * @author stefano
+ *
+ */
+public class FactOverlay extends AbstractSet<Atom> implements Facts {
+
+	private class Cursor implements Iterator<Atom> {
+
+		private Atom current = null;
+
+		private final Iterator<Atom> inner = base.iterator();
+
+		private Atom next = null;
+
+		private final Iterator<Atom> outer = added.iterator();
+
+		private Atom advance() {
+			while (inner.hasNext()) {
+				Atom atom = inner.next();
+				if (!removed.contains(atom))
+					return atom;
+			}
+			return outer.hasNext() ? outer.next() : null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (null == next)
+				next = advance();
+			return null != next;
+		}
+
+		@Override
+		public Atom next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			current = next;
+			next = null;
+			return current;
+		}
+
+		@Override
+		public void remove() {
+			if (null == current)
+				throw new IllegalStateException();
+			if (!added.remove(current))
+				removed.add(current);
+			current = null;
+		}
+
+	}
+
+	private final FactStore added;
+
+	private final FactStore base;
+
+	private final FactStore removed;
+
+	public FactOverlay(FactStore base) {
+		if (null == base)
+			throw new IllegalArgumentException("Illegal 'base' argument in FactOverlay(FactStore): " + base);
+		this.base = base;
+		this.added = new FactStore(base.getDictionary());
+		this.removed = new FactStore(base.getDictionary());
+	}
+
+	@Override
+	public boolean add(Atom atom) {
+		if (null == atom)
+			throw new IllegalArgumentException("Illegal 'atom' argument in FactOverlay.add(Atom): " + atom);
+		if (base.contains(atom))
+			return removed.remove(atom);
+		return added.add(atom);
+	}
+
+	@Override
+	public void clear() {
+		added.clear();
+		removed.addAll(base);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return added.contains(o) || base.contains(o) && !removed.contains(o);
+	}
+
+	@Override
+	public boolean contains(String identifier, Term term) {
+		return added.contains(identifier, term) || base.contains(identifier, term) && !removed.contains(identifier, term);
+	}
+
+	@Override
+	public boolean contains(String identifier, Term[] terms) {
+		return added.contains(identifier, terms) || base.contains(identifier, terms) && !removed.contains(identifier, terms);
+	}
+
+	/**
+	 * Returns the atoms of this layer that are not in the base.
+	 */
+	public final FactStore getAdded() {
+		return added;
+	}
+
+	public final FactStore getBase() {
+		return base;
+	}
+
+	@Override
+	public Dictionary getDictionary() {
+		return base.getDictionary();
+	}
+
+	/**
+	 * Returns the atoms of the base that are hidden by this layer.
+	 */
+	public final FactStore getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * The hash code is derived from the incremental ones of the base and of the
+	 * differences.
+	 */
+	@Override
+	public int hashCode() {
+		return base.hashCode() - removed.hashCode() + added.hashCode();
+	}
+
+	@Override
+	public Iterator<Atom> iterator() {
+		return new Cursor();
+	}
+
+	private Collection<Atom> merge(Collection<Atom> below, Collection<Atom> above) {
+		if (!removed.isEmpty()) {
+			List<Atom> result = new ArrayList<>(below.size() + above.size());
+			for (Atom atom : below)
+				if (!removed.contains(atom))
+					result.add(atom);
+			result.addAll(above);
+			return result;
+		}
+		if (above.isEmpty())
+			return below;
+		if (below.isEmpty())
+			return above;
+		return new CompositeCollection<>(below, above);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (added.remove(o))
+			return true;
+		return base.contains(o) && removed.add((Atom) o);
+	}
+
+	@Override
+	public Collection<Atom> select(String identifier, int arity) {
+		return merge(base.select(identifier, arity), added.select(identifier, arity));
+	}
+
+	@Override
+	public Collection<Atom> select(String identifier, int arity, int position, Term term) {
+		return merge(base.select(identifier, arity, position, term), added.select(identifier, arity, position, term));
+	}
+
+	@Override
+	public int size() {
+		return base.size() - removed.size() + added.size();
+	}
+
+}
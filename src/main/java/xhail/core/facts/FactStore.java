@@ -0,0 +1,564 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import xhail.core.terms.Atom;
+import xhail.core.terms.Term;
+
+/**
+ * A compact set of ground atoms.
+ *
+ * Predicates and terms are encoded by a {@link Dictionary} and every atom is
+ * stored as a packed tuple of integers (its predicate, a link to the next tuple
+ * with the same predicate and its arguments) in a single pool. Tuples are
+ * indexed by an open-addressing hash table, by predicate through their links
+ * and, on demand, by predicate, argument position and term. Atoms are decoded
+ * back into objects only when they are iterated.
+ *
+ * The pool and the hash table are kept on the heap unless the dictionary has a
+ * scratch directory, in which case they are memory-mapped from its scratch file
+ * and only the per-predicate heads and the on-demand argument indexes stay on
+ * the heap.
+ *
+ * Only atoms with default weight and priority and no scheme are stored, as
+ * produced by the solvers: any other atom is never contained in the store.
+ *
+ * Adding and removing atoms is not thread-safe, lookups and selections can be
+ * performed concurrently once no more atoms are added or removed, as the
+ * argument indexes built on demand are guarded.
+ *
+ * @author stefano
+ *
+ */
+public class FactStore extends AbstractSet<Atom> implements Facts {
+
+	private class Cursor implements Iterator<Atom> {
+
+		private int current = -1;
+
+		private int next = skip(0);
+
+		@Override
+		public boolean hasNext() {
+			return next < top;
+		}
+
+		@Override
+		public Atom next() {
+			if (next >= top)
+				throw new NoSuchElementException();
+			current = next;
+			next = skip(next + HEADER + arity(pool.get(next)));
+			return decode(current);
+		}
+
+		@Override
+		public void remove() {
+			if (current < 0)
+				throw new IllegalStateException();
+			delete(current);
+			current = -1;
+		}
+
+	}
+
+	private class Selection extends AbstractCollection<Atom> {
+
+		private final int[] offsets;
+
+		private Selection(int[] offsets) {
+			this.offsets = offsets;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Atom))
+				return false;
+			int offset = find((Atom) o);
+			if (offset < 0)
+				return false;
+			for (int candidate : offsets)
+				if (candidate == offset)
+					return true;
+			return false;
+		}
+
+		@Override
+		public Iterator<Atom> iterator() {
+			return new Iterator<Atom>() {
+
+				private int index = 0;
+
+				@Override
+				public boolean hasNext() {
+					return index < offsets.length;
+				}
+
+				@Override
+				public Atom next() {
+					if (index >= offsets.length)
+						throw new NoSuchElementException();
+					return decode(offsets[index++]);
+				}
+
+			};
+		}
+
+		@Override
+		public int size() {
+			return offsets.length;
+		}
+
+	}
+
+	private static final int HEADER = 2;
+
+	private static final int[] NONE = new int[0];
+
+	private static final int TOMBSTONE = -1;
+
+	private IntMultimap[][] arguments = new IntMultimap[16][];
+
+	private int[] counts = new int[16];
+
+	private final Dictionary dictionary;
+
+	private int hash = 0;
+
+	private int[] firsts = new int[16];
+
+	private int[] lasts = new int[16];
+
+	private Ints pool;
+
+	private int size = 0;
+
+	private Ints slots;
+
+	private int top = 0;
+
+	private int used = 0;
+
+	/**
+	 * Creates a store whose pool and hash table are memory-mapped from the
+	 * scratch file of the given dictionary, or kept on the heap if it has none.
+	 *
+	 * @param dictionary
+	 *            the dictionary used to encode atoms
+	 */
+	public FactStore(Dictionary dictionary) {
+		if (null == dictionary)
+			throw new IllegalArgumentException("Illegal 'dictionary' argument in FactStore(Dictionary): " + dictionary);
+		this.dictionary = dictionary;
+		this.pool = dictionary.allocate(256);
+		this.slots = dictionary.allocate(64);
+	}
+
+	private static int hash(int predicate, int[] arguments) {
+		int result = predicate;
+		for (int argument : arguments)
+			result = 31 * result + argument;
+		return spread(result);
+	}
+
+	private static boolean isStorable(Atom atom) {
+		return null == atom.getScheme() && 1 == atom.getWeight() && 1 == atom.getPriority();
+	}
+
+	private static int spread(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public boolean add(Atom atom) {
+		if (null == atom)
+			throw new IllegalArgumentException("Illegal 'atom' argument in FactStore.add(Atom): " + atom);
+		if (!isStorable(atom))
+			throw new IllegalArgumentException("Illegal 'atom' argument in FactStore.add(Atom): " + atom);
+		int predicate = dictionary.encode(atom.getIdentifier(), atom.getArity());
+		int[] arguments = new int[atom.getArity()];
+		for (int i = 0; i < arguments.length; i++)
+			arguments[i] = dictionary.encode(atom.getTerm(i));
+		if (find(predicate, arguments) >= 0)
+			return false;
+		int offset = append(predicate, arguments);
+		hash += atom.hashCode();
+		return offset >= 0;
+	}
+
+	private int append(int predicate, int[] arguments) {
+		if (2 * (used + 1) > slots.length())
+			rehash(slots.length() * (2 * size + 2 > slots.length() ? 2 : 1));
+		if (top + HEADER + arguments.length > pool.length())
+			pool = pool.resize(Math.max(2 * pool.length(), top + HEADER + arguments.length));
+		int offset = top;
+		pool.set(top++, predicate);
+		pool.set(top++, 0);
+		for (int argument : arguments)
+			pool.set(top++, argument);
+		int mask = slots.length() - 1;
+		int slot = hash(predicate, arguments) & mask;
+		while (0 != slots.get(slot) && TOMBSTONE != slots.get(slot))
+			slot = (slot + 1) & mask;
+		if (0 == slots.get(slot))
+			used += 1;
+		slots.set(slot, offset + 1);
+		if (predicate >= firsts.length) {
+			int length = Math.max(2 * firsts.length, 1 + predicate);
+			firsts = Arrays.copyOf(firsts, length);
+			lasts = Arrays.copyOf(lasts, length);
+			counts = Arrays.copyOf(counts, length);
+			this.arguments = Arrays.copyOf(this.arguments, length);
+		}
+		if (0 == firsts[predicate])
+			firsts[predicate] = offset + 1;
+		else
+			pool.set(lasts[predicate], offset + 1);
+		lasts[predicate] = offset + 1;
+		counts[predicate] += 1;
+		IntMultimap[] indexes = this.arguments[predicate];
+		if (null != indexes)
+			for (int i = 0; i < indexes.length; i++)
+				if (null != indexes[i])
+					indexes[i].put(arguments[i], offset);
+		size += 1;
+		return offset;
+	}
+
+	private int arity(int predicate) {
+		return dictionary.getArity(predicate < 0 ? ~predicate : predicate);
+	}
+
+	@Override
+	public void clear() {
+		pool = pool.reset(256);
+		slots = slots.reset(64);
+		Arrays.fill(firsts, 0);
+		Arrays.fill(lasts, 0);
+		Arrays.fill(counts, 0);
+		Arrays.fill(arguments, null);
+		hash = 0;
+		size = 0;
+		top = 0;
+		used = 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Atom))
+			return false;
+		return find((Atom) o) >= 0;
+	}
+
+	/**
+	 * Checks whether the unary atom <code>predicate(term)</code> is in the
+	 * store, without building it.
+	 *
+	 * @param identifier
+	 *            the name of the unary predicate
+	 * @param term
+	 *            the argument of the atom
+	 * @return <code>true</code> if the atom is in the store
+	 */
+	public final boolean contains(String identifier, Term term) {
+		if (null == identifier)
+			throw new IllegalArgumentException("Illegal 'identifier' argument in FactStore.contains(String, Term): " + identifier);
+		if (null == term)
+			throw new IllegalArgumentException("Illegal 'term' argument in FactStore.contains(String, Term): " + term);
+		int predicate = dictionary.lookup(identifier, 1);
+		if (predicate < 0)
+			return false;
+		int argument = dictionary.lookup(term);
+		if (argument < 0)
+			return false;
+		int mask = slots.length() - 1;
+		for (int slot = spread(31 * predicate + argument) & mask;; slot = (slot + 1) & mask) {
+			int found = slots.get(slot);
+			if (0 == found)
+				return false;
+			if (TOMBSTONE != found && pool.get(found - 1) == predicate && pool.get(found - 1 + HEADER) == argument)
+				return true;
+		}
+	}
+
+	public final boolean contains(String identifier, Term[] terms) {
+		if (null == identifier)
+			throw new IllegalArgumentException("Illegal 'identifier' argument in FactStore.contains(String, Term[]): " + identifier);
+		if (null == terms)
+			throw new IllegalArgumentException("Illegal 'terms' argument in FactStore.contains(String, Term[]): " + terms);
+		int predicate = dictionary.lookup(identifier, terms.length);
+		if (predicate < 0)
+			return false;
+		int[] arguments = new int[terms.length];
+		for (int i = 0; i < arguments.length; i++)
+			if ((arguments[i] = dictionary.lookup(terms[i])) < 0)
+				return false;
+		return find(predicate, arguments) >= 0;
+	}
+
+	/**
+	 * Builds the atom stored at the given offset.
+	 *
+	 * @param offset
+	 *            the offset of the tuple in the store
+	 * @return the decoded atom
+	 */
+	public final Atom decode(int offset) {
+		if (offset < 0 || offset >= top || pool.get(offset) < 0)
+			throw new IndexOutOfBoundsException("Illegal 'offset' argument in FactStore.decode(int): " + offset);
+		int predicate = pool.get(offset);
+		int arity = dictionary.getArity(predicate);
+		Atom.Builder builder = new Atom.Builder(dictionary.getIdentifier(predicate));
+		for (int i = 0; i < arity; i++)
+			builder.addTerm(dictionary.getTerm(pool.get(offset + HEADER + i)));
+		return builder.build();
+	}
+
+	private void delete(int offset) {
+		int predicate = pool.get(offset);
+		int[] arguments = new int[dictionary.getArity(predicate)];
+		for (int i = 0; i < arguments.length; i++)
+			arguments[i] = pool.get(offset + HEADER + i);
+		int mask = slots.length() - 1;
+		int slot = hash(predicate, arguments) & mask;
+		while (slots.get(slot) != offset + 1)
+			slot = (slot + 1) & mask;
+		slots.set(slot, TOMBSTONE);
+		hash -= decode(offset).hashCode();
+		pool.set(offset, ~predicate);
+		counts[predicate] -= 1;
+		size -= 1;
+	}
+
+	private int find(Atom atom) {
+		if (!isStorable(atom))
+			return -1;
+		int predicate = dictionary.lookup(atom.getIdentifier(), atom.getArity());
+		if (predicate < 0)
+			return -1;
+		int[] arguments = new int[atom.getArity()];
+		for (int i = 0; i < arguments.length; i++)
+			if ((arguments[i] = dictionary.lookup(atom.getTerm(i))) < 0)
+				return -1;
+		return find(predicate, arguments);
+	}
+
+	private int find(int predicate, int[] arguments) {
+		int mask = slots.length() - 1;
+		for (int slot = hash(predicate, arguments) & mask;; slot = (slot + 1) & mask) {
+			int found = slots.get(slot);
+			if (0 == found)
+				return -1;
+			if (TOMBSTONE != found && matches(found - 1, predicate, arguments))
+				return found - 1;
+		}
+	}
+
+	public final int getArgument(int offset, int index) {
+		if (offset < 0 || offset >= top || pool.get(offset) < 0)
+			throw new IndexOutOfBoundsException("Illegal 'offset' argument in FactStore.getArgument(int, int): " + offset);
+		if (index < 0 || index >= dictionary.getArity(pool.get(offset)))
+			throw new IndexOutOfBoundsException("Illegal 'index' argument in FactStore.getArgument(int, int): " + index);
+		return pool.get(offset + HEADER + index);
+	}
+
+	public final Dictionary getDictionary() {
+		return dictionary;
+	}
+
+	public final int getPredicate(int offset) {
+		if (offset < 0 || offset >= top || pool.get(offset) < 0)
+			throw new IndexOutOfBoundsException("Illegal 'offset' argument in FactStore.getPredicate(int): " + offset);
+		return pool.get(offset);
+	}
+
+	/**
+	 * The hash code is maintained incrementally, it is the same of any other
+	 * set containing the same atoms.
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public Iterator<Atom> iterator() {
+		return new Cursor();
+	}
+
+	private boolean matches(int offset, int predicate, int[] arguments) {
+		if (pool.get(offset) != predicate)
+			return false;
+		for (int i = 0; i < arguments.length; i++)
+			if (pool.get(offset + HEADER + i) != arguments[i])
+				return false;
+		return true;
+	}
+
+	private void rehash(int capacity) {
+		slots = slots.reset(capacity);
+		used = 0;
+		int mask = capacity - 1;
+		for (int offset = skip(0); offset < top; offset = skip(offset + HEADER + arity(pool.get(offset)))) {
+			int predicate = pool.get(offset);
+			int arity = dictionary.getArity(predicate);
+			int h = predicate;
+			for (int i = 0; i < arity; i++)
+				h = 31 * h + pool.get(offset + HEADER + i);
+			int slot = spread(h) & mask;
+			while (0 != slots.get(slot))
+				slot = (slot + 1) & mask;
+			slots.set(slot, offset + 1);
+			used += 1;
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Atom))
+			return false;
+		int offset = find((Atom) o);
+		if (offset < 0)
+			return false;
+		delete(offset);
+		return true;
+	}
+
+	/**
+	 * Returns the offsets of all the atoms with the given predicate.
+	 *
+	 * @param predicate
+	 *            the encoded predicate
+	 * @return the offsets of the matching atoms
+	 */
+	public final int[] select(int predicate) {
+		if (predicate < 0 || predicate >= firsts.length || 0 == counts[predicate])
+			return NONE;
+		int[] result = new int[counts[predicate]];
+		int count = 0;
+		for (int link = firsts[predicate]; 0 != link; link = pool.get(link))
+			if (pool.get(link - 1) >= 0)
+				result[count++] = link - 1;
+		return result;
+	}
+
+	/**
+	 * Returns the offsets of all the atoms with the given predicate whose
+	 * argument at the given position is the given term. The index for each
+	 * predicate and position is built on first use and kept up to date.
+	 *
+	 * @param predicate
+	 *            the encoded predicate
+	 * @param position
+	 *            the position of the argument
+	 * @param term
+	 *            the encoded term
+	 * @return the offsets of the matching atoms
+	 */
+	public final int[] select(int predicate, int position, int term) {
+		if (predicate < 0 || predicate >= firsts.length || 0 == counts[predicate] || term < 0)
+			return NONE;
+		int arity = dictionary.getArity(predicate);
+		if (position < 0 || position >= arity)
+			throw new IndexOutOfBoundsException("Illegal 'position' argument in FactStore.select(int, int, int): " + position);
+		IntMultimap index = index(predicate, position);
+		int slot = index.find(term);
+		if (slot < 0)
+			return NONE;
+		return live(index.get(slot), index.size(slot));
+	}
+
+	/**
+	 * Returns the atoms with the given identifier and arity.
+	 *
+	 * @param identifier
+	 *            the name of the predicate
+	 * @param arity
+	 *            the arity of the predicate
+	 * @return a view on the matching atoms
+	 */
+	public final Collection<Atom> select(String identifier, int arity) {
+		if (null == identifier)
+			throw new IllegalArgumentException("Illegal 'identifier' argument in FactStore.select(String, int): " + identifier);
+		return new Selection(select(dictionary.lookup(identifier, arity)));
+	}
+
+	/**
+	 * Returns the atoms with the given identifier and arity that have the given
+	 * term at the given position.
+	 *
+	 * @param identifier
+	 *            the name of the predicate
+	 * @param arity
+	 *            the arity of the predicate
+	 * @param position
+	 *            the position of the argument
+	 * @param term
+	 *            the argument
+	 * @return a view on the matching atoms
+	 */
+	public final Collection<Atom> select(String identifier, int arity, int position, Term term) {
+		if (null == identifier)
+			throw new IllegalArgumentException("Illegal 'identifier' argument in FactStore.select(String, int, int, Term): " + identifier);
+		if (null == term)
+			throw new IllegalArgumentException("Illegal 'term' argument in FactStore.select(String, int, int, Term): " + term);
+		int predicate = dictionary.lookup(identifier, arity);
+		if (predicate < 0)
+			return new Selection(NONE);
+		return new Selection(select(predicate, position, dictionary.lookup(term)));
+	}
+
+	/**
+	 * Returns the index of the given predicate and position, building it on
+	 * first use; building is guarded so that concurrent readers never see a
+	 * partial index.
+	 */
+	private synchronized IntMultimap index(int predicate, int position) {
+		if (null == arguments[predicate])
+			arguments[predicate] = new IntMultimap[dictionary.getArity(predicate)];
+		IntMultimap result = arguments[predicate][position];
+		if (null == result) {
+			result = new IntMultimap();
+			for (int link = firsts[predicate]; 0 != link; link = pool.get(link))
+				if (pool.get(link - 1) >= 0)
+					result.put(pool.get(link - 1 + HEADER + position), link - 1);
+			arguments[predicate][position] = result;
+		}
+		return result;
+	}
+
+	private int[] live(int[] offsets, int count) {
+		int alive = 0;
+		for (int i = 0; i < count; i++)
+			if (pool.get(offsets[i]) >= 0)
+				alive += 1;
+		if (alive == count)
+			return Arrays.copyOf(offsets, count);
+		int[] result = new int[alive];
+		for (int i = 0, j = 0; i < count; i++)
+			if (pool.get(offsets[i]) >= 0)
+				result[j++] = offsets[i];
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private int skip(int offset) {
+		while (offset < top && pool.get(offset) < 0)
+			offset += HEADER + arity(pool.get(offset));
+		return offset;
+	}
+
+}
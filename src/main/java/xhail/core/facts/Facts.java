@@ -0,0 +1,74 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.util.Collection;
+import java.util.Set;
+
+import xhail.core.terms.Atom;
+import xhail.core.terms.Term;
+
+/**
+ * A set of ground atoms that can be queried by predicate and argument without
+ * building atoms.
+ *
+ * @author stefano
+ *
+ */
+public interface Facts extends Set<Atom> {
+
+	/**
+	 * Checks whether the unary atom <code>identifier(term)</code> is in the
+	 * set, without building it.
+	 *
+	 * @param identifier
+	 *            the name of the unary predicate
+	 * @param term
+	 *            the argument of the atom
+	 * @return <code>true</code> if the atom is in the set
+	 */
+	public boolean contains(String identifier, Term term);
+
+	/**
+	 * Checks whether the atom with the given identifier and arguments is in the
+	 * set, without building it.
+	 *
+	 * @param identifier
+	 *            the name of the predicate
+	 * @param terms
+	 *            the arguments of the atom
+	 * @return <code>true</code> if the atom is in the set
+	 */
+	public boolean contains(String identifier, Term[] terms);
+
+	public Dictionary getDictionary();
+
+	/**
+	 * Returns the atoms with the given identifier and arity.
+	 *
+	 * @param identifier
+	 *            the name of the predicate
+	 * @param arity
+	 *            the arity of the predicate
+	 * @return a view on the matching atoms
+	 */
+	public Collection<Atom> select(String identifier, int arity);
+
+	/**
+	 * Returns the atoms with the given identifier and arity that have the given
+	 * term at the given position.
+	 *
+	 * @param identifier
+	 *            the name of the predicate
+	 * @param arity
+	 *            the arity of the predicate
+	 * @param position
+	 *            the position of the argument
+	 * @param term
+	 *            the argument
+	 * @return a view on the matching atoms
+	 */
+	public Collection<Atom> select(String identifier, int arity, int position, Term term);
+
+}
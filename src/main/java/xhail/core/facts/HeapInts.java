@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.util.Arrays;
+
+/**
+ * @author stefano
+ *
+ */
+class HeapInts extends Ints {
+
+	private final int[] values;
+
+	public HeapInts(int length) {
+		if (length < 0)
+			throw new IllegalArgumentException("Illegal 'length' argument in HeapInts(int): " + length);
+		this.values = new int[length];
+	}
+
+	private HeapInts(int[] values) {
+		this.values = values;
+	}
+
+	@Override
+	public int get(int index) {
+		return values[index];
+	}
+
+	@Override
+	public int length() {
+		return values.length;
+	}
+
+	@Override
+	public Ints reset(int length) {
+		if (length < 0)
+			throw new IllegalArgumentException("Illegal 'length' argument in HeapInts.reset(int): " + length);
+		return new HeapInts(length);
+	}
+
+	@Override
+	public Ints resize(int length) {
+		if (length < 0)
+			throw new IllegalArgumentException("Illegal 'length' argument in HeapInts.resize(int): " + length);
+		return new HeapInts(Arrays.copyOf(values, length));
+	}
+
+	@Override
+	public void set(int index, int value) {
+		values[index] = value;
+	}
+
+}
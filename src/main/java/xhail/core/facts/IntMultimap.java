@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from non-negative integer keys to growable lists
+ * of integers, with no boxing.
+ *
+ * @author stefano
+ *
+ */
+class IntMultimap {
+
+	private int count = 0;
+
+	private int[] keys = new int[16];
+
+	private int[][] lists = new int[16][];
+
+	private int[] sizes = new int[16];
+
+	private static int spread(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	public final void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(lists, null);
+		Arrays.fill(sizes, 0);
+		count = 0;
+	}
+
+	/**
+	 * Returns the slot of the given key, or <code>-1</code> if absent.
+	 */
+	public final int find(int key) {
+		int mask = keys.length - 1;
+		for (int slot = spread(key) & mask;; slot = (slot + 1) & mask) {
+			int found = keys[slot];
+			if (0 == found)
+				return -1;
+			if (found == key + 1)
+				return slot;
+		}
+	}
+
+	public final int[] get(int slot) {
+		return lists[slot];
+	}
+
+	public final void put(int key, int value) {
+		if (key < 0)
+			throw new IllegalArgumentException("Illegal 'key' argument in IntMultimap.put(int, int): " + key);
+		if (2 * (count + 1) > keys.length)
+			rehash(2 * keys.length);
+		int mask = keys.length - 1;
+		int slot = spread(key) & mask;
+		while (0 != keys[slot] && keys[slot] != key + 1)
+			slot = (slot + 1) & mask;
+		if (0 == keys[slot]) {
+			keys[slot] = key + 1;
+			lists[slot] = new int[2];
+			count += 1;
+		} else if (sizes[slot] == lists[slot].length)
+			lists[slot] = Arrays.copyOf(lists[slot], 2 * sizes[slot]);
+		lists[slot][sizes[slot]++] = value;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[][] oldLists = lists;
+		int[] oldSizes = sizes;
+		keys = new int[capacity];
+		lists = new int[capacity][];
+		sizes = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++)
+			if (0 != oldKeys[i]) {
+				int slot = spread(oldKeys[i] - 1) & mask;
+				while (0 != keys[slot])
+					slot = (slot + 1) & mask;
+				keys[slot] = oldKeys[i];
+				lists[slot] = oldLists[i];
+				sizes[slot] = oldSizes[i];
+			}
+	}
+
+	public final int size() {
+		return count;
+	}
+
+	public final int size(int slot) {
+		return sizes[slot];
+	}
+
+}
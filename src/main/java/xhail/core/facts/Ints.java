@@ -0,0 +1,40 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+/**
+ * A fixed-length array of integers whose content may live either on the heap
+ * or outside of it. New storages are always zero-filled.
+ *
+ * @author stefano
+ *
+ */
+abstract class Ints {
+
+	public abstract int get(int index);
+
+	public abstract int length();
+
+	/**
+	 * Returns a zero-filled storage of the given length, possibly this one
+	 * itself, whose content is dropped.
+	 */
+	public abstract Ints reset(int length);
+
+	/**
+	 * Returns a storage of the given length with the same content of this one,
+	 * possibly this one itself.
+	 */
+	public abstract Ints resize(int length);
+
+	public abstract void set(int index, int value);
+
+	/**
+	 * Releases the resources held by this storage, which must not be used
+	 * afterwards.
+	 */
+	public void release() {
+	}
+
+}
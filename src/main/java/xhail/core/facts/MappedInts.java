@@ -0,0 +1,108 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * An array of integers stored in pages of a memory-mapped {@link Scratch}
+ * file, so that its content lives outside of the heap and is paged in and out
+ * by the operating system.
+ *
+ * The array grows by taking new pages, hence it can grow well beyond the 2GB
+ * limit of a single mapping without copying, and it gives its pages back to
+ * the scratch file when it is released, reset or collected.
+ *
+ * @author stefano
+ *
+ */
+class MappedInts extends Ints {
+
+	private IntBuffer[] chunks = new IntBuffer[0];
+
+	private final Scratch.Lease lease;
+
+	private int length = 0;
+
+	private final Scratch scratch;
+
+	public MappedInts(Scratch scratch, int length) {
+		if (null == scratch)
+			throw new IllegalArgumentException("Illegal 'scratch' argument in MappedInts(Scratch, int): " + scratch);
+		if (length < 0)
+			throw new IllegalArgumentException("Illegal 'length' argument in MappedInts(Scratch, int): " + length);
+		this.scratch = scratch;
+		this.lease = scratch.lease(this);
+		map(length);
+	}
+
+	@Override
+	public int get(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Illegal 'index' argument in MappedInts.get(int): " + index);
+		return chunks[index >>> Scratch.BITS].get(index & Scratch.MASK);
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	private void map(int length) {
+		int count = (int) ((length + (long) Scratch.MASK) >>> Scratch.BITS);
+		if (count > chunks.length) {
+			int start = chunks.length;
+			chunks = Arrays.copyOf(chunks, count);
+			for (int i = start; i < count; i++)
+				chunks[i] = scratch.grow(lease);
+		}
+		this.length = length;
+	}
+
+	@Override
+	public void release() {
+		scratch.release(lease);
+		chunks = new IntBuffer[0];
+		length = 0;
+	}
+
+	/**
+	 * Empties in place: the pages needed are zero-filled and kept, the others
+	 * are given back.
+	 */
+	@Override
+	public Ints reset(int length) {
+		if (length < 0)
+			throw new IllegalArgumentException("Illegal 'length' argument in MappedInts.reset(int): " + length);
+		int count = (int) ((length + (long) Scratch.MASK) >>> Scratch.BITS);
+		if (count < chunks.length) {
+			scratch.shrink(lease, count);
+			chunks = Arrays.copyOf(chunks, count);
+		}
+		for (IntBuffer chunk : chunks)
+			Scratch.zero(chunk);
+		map(length);
+		return this;
+	}
+
+	/**
+	 * Grows in place: pages keep their content and new ones are zero-filled.
+	 */
+	@Override
+	public Ints resize(int length) {
+		if (length < this.length)
+			throw new IllegalArgumentException("Illegal 'length' argument in MappedInts.resize(int): " + length);
+		map(length);
+		return this;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Illegal 'index' argument in MappedInts.set(int, int): " + index);
+		chunks[index >>> Scratch.BITS].put(index & Scratch.MASK, value);
+	}
+
+}
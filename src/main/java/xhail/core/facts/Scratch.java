@@ -0,0 +1,209 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import xhail.core.Logger;
+
+/**
+ * A single scratch file backing all the memory-mapped storages of a
+ * dictionary and of the fact stores using it.
+ *
+ * The file grows in place: it is mapped in large segments, each one only
+ * once, which are handed out to the storages in small pages. The pages of a
+ * storage that is released, or collected, are recycled by the next ones
+ * instead of growing the file. The file is unlinked as soon as it is opened
+ * and disappears with the last mapping.
+ *
+ * @author stefano
+ *
+ */
+class Scratch {
+
+	/**
+	 * The pages held by a storage, which are given back when the storage is
+	 * collected without being released.
+	 */
+	static final class Lease extends PhantomReference<Object> {
+
+		private int count = 0;
+
+		private int[] pages = new int[4];
+
+		private Lease(Object owner, ReferenceQueue<Object> queue) {
+			super(owner, queue);
+		}
+
+	}
+
+	static final int BITS = 12;
+
+	static final int PAGE = 1 << BITS;
+
+	static final int MASK = PAGE - 1;
+
+	private static final int SEGMENT = 12;
+
+	private static final int[] ZEROS = new int[PAGE];
+
+	private FileChannel channel;
+
+	private final Path directory;
+
+	private int free = 0;
+
+	private int[] frees = new int[16];
+
+	private final Set<Lease> leases = new HashSet<>();
+
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+	private IntBuffer[] segments = new IntBuffer[0];
+
+	private int top = 0;
+
+	private IntBuffer[] views = new IntBuffer[0];
+
+	public Scratch(Path directory) {
+		if (null == directory)
+			throw new IllegalArgumentException("Illegal 'directory' argument in Scratch(Path): " + directory);
+		this.directory = directory;
+		try {
+			Path path = Files.createTempFile(directory, "facts", ".bin");
+			this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				Files.delete(path);
+			} catch (IOException e) {
+				path.toFile().deleteOnExit();
+			}
+		} catch (IOException e) {
+			Logger.error(String.format("cannot create scratch files in '%s' (do we have rights?)", directory.toString()));
+		}
+	}
+
+	/**
+	 * Fills the given page with zeros.
+	 */
+	static void zero(IntBuffer page) {
+		IntBuffer buffer = page.duplicate();
+		buffer.clear();
+		buffer.put(ZEROS);
+	}
+
+	/**
+	 * Returns the number of pages not held by any storage.
+	 */
+	public synchronized int getFree() {
+		reclaim();
+		return free;
+	}
+
+	/**
+	 * Returns the number of pages taken from the file so far.
+	 */
+	public synchronized int getPages() {
+		return top;
+	}
+
+	/**
+	 * Adds a zero-filled page to the given lease, and returns it.
+	 */
+	public synchronized IntBuffer grow(Lease lease) {
+		if (null == lease)
+			throw new IllegalArgumentException("Illegal 'lease' argument in Scratch.grow(Scratch.Lease): " + lease);
+		reclaim();
+		int page;
+		if (free > 0) {
+			page = frees[--free];
+			zero(views[page]);
+		} else
+			page = map(top++);
+		if (lease.count == lease.pages.length)
+			lease.pages = Arrays.copyOf(lease.pages, 2 * lease.count);
+		lease.pages[lease.count++] = page;
+		return views[page];
+	}
+
+	/**
+	 * Returns a new empty lease, whose pages are given back when the given
+	 * owner is collected.
+	 */
+	public synchronized Lease lease(Object owner) {
+		if (null == owner)
+			throw new IllegalArgumentException("Illegal 'owner' argument in Scratch.lease(Object): " + owner);
+		reclaim();
+		Lease result = new Lease(owner, queue);
+		leases.add(result);
+		return result;
+	}
+
+	private int map(int page) {
+		int segment = page >>> SEGMENT;
+		if (segment >= segments.length)
+			try {
+				long size = 4L * PAGE << SEGMENT;
+				segments = Arrays.copyOf(segments, segment + 1);
+				segments[segment] = channel.map(MapMode.READ_WRITE, size * segment, size).order(ByteOrder.nativeOrder()).asIntBuffer();
+				views = Arrays.copyOf(views, (segment + 1) << SEGMENT);
+			} catch (IOException e) {
+				Logger.error(String.format("cannot map scratch files in '%s' (is there enough space?)", directory.toString()));
+			}
+		IntBuffer buffer = segments[segment].duplicate();
+		buffer.position((page & ((1 << SEGMENT) - 1)) << BITS);
+		buffer.limit(buffer.position() + PAGE);
+		views[page] = buffer.slice();
+		return page;
+	}
+
+	private void reclaim() {
+		for (Reference<?> reference = queue.poll(); null != reference; reference = queue.poll()) {
+			Lease lease = (Lease) reference;
+			if (leases.remove(lease))
+				shrink(lease, 0);
+		}
+	}
+
+	/**
+	 * Gives back all the pages of the given lease, which must not be used
+	 * afterwards.
+	 */
+	public synchronized void release(Lease lease) {
+		if (null == lease)
+			throw new IllegalArgumentException("Illegal 'lease' argument in Scratch.release(Scratch.Lease): " + lease);
+		if (leases.remove(lease)) {
+			shrink(lease, 0);
+			lease.clear();
+		}
+	}
+
+	/**
+	 * Gives back the pages of the given lease beyond the given count.
+	 */
+	public synchronized void shrink(Lease lease, int count) {
+		if (null == lease)
+			throw new IllegalArgumentException("Illegal 'lease' argument in Scratch.shrink(Scratch.Lease, int): " + lease);
+		if (count < 0 || count > lease.count)
+			throw new IllegalArgumentException("Illegal 'count' argument in Scratch.shrink(Scratch.Lease, int): " + count);
+		while (lease.count > count) {
+			if (free == frees.length)
+				frees = Arrays.copyOf(frees, 2 * free);
+			frees[free++] = lease.pages[--lease.count];
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view on the union of two disjoint sets, which are not copied.
+ *
+ * @author stefano
+ *
+ */
+public class Union<E> extends AbstractSet<E> {
+
+	private final Set<E> first;
+
+	private final Set<E> second;
+
+	public Union(Set<E> first, Set<E> second) {
+		if (null == first)
+			throw new IllegalArgumentException("Illegal 'first' argument in Union(Set<E>, Set<E>): " + first);
+		if (null == second)
+			throw new IllegalArgumentException("Illegal 'second' argument in Union(Set<E>, Set<E>): " + second);
+		this.first = first;
+		this.second = second;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return first.contains(o) || second.contains(o);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+
+			private Iterator<E> current = first.iterator();
+
+			private boolean last = false;
+
+			@Override
+			public boolean hasNext() {
+				if (!current.hasNext() && !last) {
+					current = second.iterator();
+					last = true;
+				}
+				return current.hasNext();
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return current.next();
+			}
+
+		};
+	}
+
+	@Override
+	public int size() {
+		return first.size() + second.size();
+	}
+
+}
@@ -9,6 +9,8 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import xhail.core.Logger;
 import xhail.core.entities.Values;
@@ -44,6 +46,11 @@ public class Acquirer {
 
 	private Set<String> atoms;
 
+	/**
+	 * All the answers found, by their values, the best ones included.
+	 */
+	private SortedMap<Values, Collection<Collection<String>>> levels;
+
 	private String token;
 
 	private boolean optimal = false;
@@ -70,8 +77,18 @@ public class Acquirer {
 		return result;
 	}
 
+	/**
+	 * Parses the output of a solver enumerating models of any cost, and
+	 * returns all the answers found, by increasing values.
+	 */
+	public SortedMap<Values, Collection<Collection<String>>> enumerate() {
+		parse();
+		return levels;
+	}
+
 	public Map.Entry<Values, Collection<Collection<String>>> parse() {
 		this.answers = new HashSet<>();
+		this.levels = new TreeMap<>();
 		try {
 			if (UNKNOWN.equals(token))
 				parseUNKNOWN();
@@ -262,6 +279,7 @@ public class Acquirer {
 			this.firstValues = this.values;
 		if (order <= 0)
 			answers.add(atoms);
+		levels.computeIfAbsent(found, key -> new HashSet<>()).add(atoms);
 		while (COST.equals(token))
 			parseCOSTSHRINK();
 		if (token != null) {
@@ -269,6 +287,9 @@ public class Acquirer {
 				parseOPTIMUM();
 				if (FOUND.equals(token))
 					parseFOUND();
+			} else if (SATISFIABLE.equals(token)) {
+				// enumerations end with no optimum
+				parseSATISFIABLE();
 			} else {
 				parseNested();
 			}
@@ -0,0 +1,394 @@
+/**
+ *
+ */
+package xhail.core.parser;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The predicates a background statement defines and those it depends on,
+ * positively or through negation, known by name only.
+ *
+ * Statements that can make a program inconsistent by themselves, as
+ * constraints, weak constraints, bounded choices and directives, or that
+ * cannot be understood, are roots: they are always kept, and so is what they
+ * depend on.
+ *
+ * @author stefano
+ *
+ */
+public class Dependencies {
+
+	/**
+	 * Reads a statement one character at a time, comments excluded.
+	 */
+	public static class Builder {
+
+		private boolean bounded = false;
+
+		private boolean closed = false;
+
+		private boolean colon = false;
+
+		private int depth = 0;
+
+		private boolean directive = false;
+
+		private boolean head = true;
+
+		private Set<String> heads = new LinkedHashSet<>();
+
+		private boolean negated = false;
+
+		private Set<String> negatives = new LinkedHashSet<>();
+
+		private boolean open = false;
+
+		private Set<String> positives = new LinkedHashSet<>();
+
+		private char previous = ' ';
+
+		private boolean root = false;
+
+		private boolean started = false;
+
+		private final StringBuilder token = new StringBuilder();
+
+		public Builder append(char c, boolean quoted) {
+			if (quoted) {
+				close();
+				previous = '"';
+				started = true;
+				return this;
+			}
+			if (Character.isLetterOrDigit(c) || '_' == c || '\'' == c) {
+				token.append(c);
+				started = true;
+				return this;
+			}
+			close();
+			if (Character.isWhitespace(c))
+				return this;
+			// a condition in the head, unless it is the neck
+			if (colon && '-' != c)
+				open = true;
+			colon = false;
+			switch (c) {
+			case '(':
+				depth += 1;
+				break;
+			case ')':
+				depth -= 1;
+				break;
+			case '#':
+				// directives, aggregates and theory atoms in heads
+				if (!started || head)
+					root = true;
+				directive = true;
+				break;
+			case '&':
+				root = true;
+				break;
+			case '{':
+				// a lower bound on a choice
+				if (head && started)
+					bounded = true;
+				open |= head;
+				break;
+			case ';':
+			case '|':
+				open |= head && 0 == depth;
+				break;
+			case ':':
+				colon = head && 0 == depth;
+				break;
+			case '}':
+				closed = head;
+				break;
+			case '-':
+				if (':' == previous && 0 == depth && head) {
+					head = false;
+					if (heads.isEmpty() && !closed)
+						root = true;
+				}
+				break;
+			case '~':
+				if (':' == previous)
+					root = true;
+				break;
+			default:
+				// an upper bound on a choice
+				if (closed && head && '.' != c && ':' != c)
+					bounded = true;
+			}
+			previous = c;
+			started = true;
+			return this;
+		}
+
+		public Dependencies build() {
+			close();
+			if (heads.isEmpty() || bounded)
+				root = true;
+			return new Dependencies(heads, positives, negatives, open, root);
+		}
+
+		private void close() {
+			if (token.length() == 0)
+				return;
+			String name = token.toString();
+			token.setLength(0);
+			if (directive) {
+				directive = false;
+				previous = 'a';
+				return;
+			}
+			previous = 'a';
+			if (closed && head)
+				bounded = true;
+			if (0 != depth || !Character.isLowerCase(name.charAt(0)))
+				return;
+			if ("not".equals(name))
+				negated = true;
+			else {
+				if (head)
+					heads.add(name);
+				else if (negated)
+					negatives.add(name);
+				else
+					positives.add(name);
+				negated = false;
+			}
+		}
+
+	}
+
+	/**
+	 * Returns the dependencies of the given statement, which is expected to be
+	 * free of comments.
+	 */
+	public static Dependencies of(String statement) {
+		if (null == statement)
+			throw new IllegalArgumentException("Illegal 'statement' argument in Dependencies.of(String): " + statement);
+		Builder builder = new Builder();
+		boolean quoted = false;
+		boolean escaped = false;
+		for (int i = 0; i < statement.length(); i++) {
+			char c = statement.charAt(i);
+			if (quoted) {
+				if (escaped)
+					escaped = false;
+				else if ('\\' == c)
+					escaped = true;
+				else if ('"' == c)
+					quoted = false;
+				builder.append(c, true);
+			} else if ('"' == c) {
+				quoted = true;
+				builder.append(c, true);
+			} else
+				builder.append(c, false);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the names of the predicates the given roots depend on, through
+	 * the given statements, roots included.
+	 *
+	 * Predicates left out that depend on themselves through negation might
+	 * make the program inconsistent, so they are brought in as further roots.
+	 */
+	public static Set<String> relevant(Collection<Dependencies> statements, Collection<String> roots) {
+		if (null == statements)
+			throw new IllegalArgumentException("Illegal 'statements' argument in Dependencies.relevant(Collection<Dependencies>, Collection<String>): " + statements);
+		if (null == roots)
+			throw new IllegalArgumentException("Illegal 'roots' argument in Dependencies.relevant(Collection<Dependencies>, Collection<String>): " + roots);
+		Map<String, Set<String>> edges = new HashMap<>();
+		Map<String, Set<String>> negations = new HashMap<>();
+		Set<String> result = new HashSet<>(roots);
+		for (Dependencies statement : statements) {
+			for (String head : statement.heads) {
+				Set<String> targets = edges.computeIfAbsent(head, key -> new HashSet<>());
+				targets.addAll(Arrays.asList(statement.positives));
+				targets.addAll(Arrays.asList(statement.negatives));
+				if (statement.negatives.length > 0)
+					negations.computeIfAbsent(head, key -> new HashSet<>()).addAll(Arrays.asList(statement.negatives));
+			}
+			if (statement.root) {
+				result.addAll(Arrays.asList(statement.heads));
+				result.addAll(Arrays.asList(statement.positives));
+				result.addAll(Arrays.asList(statement.negatives));
+			}
+		}
+		close(result, edges);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Map.Entry<String, Set<String>> entry : negations.entrySet())
+				if (!result.contains(entry.getKey()))
+					for (String target : entry.getValue())
+						if (!result.contains(target) && reaches(target, entry.getKey(), edges, result)) {
+							result.add(entry.getKey());
+							close(result, edges);
+							changed = true;
+							break;
+						}
+		}
+		return result;
+	}
+
+	private static void close(Set<String> result, Map<String, Set<String>> edges) {
+		Deque<String> queue = new ArrayDeque<>(result);
+		while (!queue.isEmpty())
+			for (String target : edges.getOrDefault(queue.pop(), new HashSet<>()))
+				if (result.add(target))
+					queue.push(target);
+	}
+
+	private static boolean reaches(String source, String target, Map<String, Set<String>> edges, Set<String> excluded) {
+		Set<String> seen = new HashSet<>();
+		Deque<String> queue = new ArrayDeque<>();
+		queue.push(source);
+		seen.add(source);
+		while (!queue.isEmpty()) {
+			String current = queue.pop();
+			if (current.equals(target))
+				return true;
+			for (String next : edges.getOrDefault(current, new HashSet<>()))
+				if (!excluded.contains(next) && seen.add(next))
+					queue.push(next);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the names of the predicates whose atoms are not settled by the
+	 * background alone: the given ones, those defined by open or root
+	 * statements or through negative loops, and all those depending on them.
+	 */
+	public static Set<String> unsettled(Collection<Dependencies> statements, Collection<String> sources) {
+		if (null == statements)
+			throw new IllegalArgumentException("Illegal 'statements' argument in Dependencies.unsettled(Collection<Dependencies>, Collection<String>): " + statements);
+		if (null == sources)
+			throw new IllegalArgumentException("Illegal 'sources' argument in Dependencies.unsettled(Collection<Dependencies>, Collection<String>): " + sources);
+		Map<String, Set<String>> edges = new HashMap<>();
+		Map<String, Set<String>> dependents = new HashMap<>();
+		Set<String> result = new HashSet<>(sources);
+		for (Dependencies statement : statements)
+			for (String head : statement.heads) {
+				if (statement.open || statement.root)
+					result.add(head);
+				for (String[] targets : new String[][] { statement.positives, statement.negatives })
+					for (String target : targets) {
+						edges.computeIfAbsent(head, key -> new HashSet<>()).add(target);
+						dependents.computeIfAbsent(target, key -> new HashSet<>()).add(head);
+					}
+			}
+		for (Dependencies statement : statements)
+			for (String head : statement.heads)
+				for (String target : statement.negatives)
+					if (reaches(target, head, edges, Collections.emptySet()))
+						result.add(head);
+		close(result, dependents);
+		return result;
+	}
+
+	private final String[] heads;
+
+	private final String[] negatives;
+
+	private final boolean open;
+
+	private final String[] positives;
+
+	private final boolean root;
+
+	private Dependencies(Set<String> heads, Set<String> positives, Set<String> negatives, boolean open, boolean root) {
+		this.heads = heads.toArray(new String[heads.size()]);
+		this.negatives = negatives.toArray(new String[negatives.size()]);
+		this.open = open;
+		this.positives = positives.toArray(new String[positives.size()]);
+		this.root = root;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Dependencies other = (Dependencies) obj;
+		return open == other.open && root == other.root && Arrays.equals(heads, other.heads) && Arrays.equals(positives, other.positives)
+				&& Arrays.equals(negatives, other.negatives);
+	}
+
+	public final String[] getHeads() {
+		return heads;
+	}
+
+	public final String[] getNegatives() {
+		return negatives;
+	}
+
+	public final String[] getPositives() {
+		return positives;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(heads);
+		result = prime * result + Arrays.hashCode(negatives);
+		result = prime * result + (open ? 1231 : 1237);
+		result = prime * result + Arrays.hashCode(positives);
+		result = prime * result + (root ? 1231 : 1237);
+		return result;
+	}
+
+	/**
+	 * Checks whether the statement must be kept, given the names of the
+	 * relevant predicates.
+	 */
+	public final boolean isRelevant(Set<String> relevant) {
+		if (null == relevant)
+			throw new IllegalArgumentException("Illegal 'relevant' argument in Dependencies.isRelevant(Set<String>): " + relevant);
+		if (root)
+			return true;
+		for (String head : heads)
+			if (relevant.contains(head))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Checks whether the statement may or may not derive its heads, as choices
+	 * and disjunctions do.
+	 */
+	public final boolean isOpen() {
+		return open;
+	}
+
+	public final boolean isRoot() {
+		return root;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s <- %s, not %s%s%s", Arrays.toString(heads), Arrays.toString(positives), Arrays.toString(negatives), open ? " (open)" : "",
+				root ? " (root)" : "");
+	}
+
+}
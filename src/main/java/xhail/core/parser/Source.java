@@ -0,0 +1,301 @@
+/**
+ *
+ */
+package xhail.core.parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import xhail.core.Emitter;
+import xhail.core.Logger;
+
+/**
+ * The background of a source file, kept as the byte ranges of the file that
+ * hold plain statements, so that it can be copied into the programs passed to
+ * the solver without ever being decoded. Each range holds a run of statements
+ * with the same {@link Dependencies}, so that it can be sliced away as a whole.
+ *
+ * Directives are cut out of the ranges and handed over as statements, just
+ * like {@link Splitter} would return them.
+ *
+ * @author stefano
+ *
+ */
+public class Source {
+
+	private static final int COMMENT = 1;
+
+	private static final int DOT = 2;
+
+	private static final int ESCAPE = 3;
+
+	private static final int MULTI = 4;
+
+	private static final int NORMAL = 0;
+
+	private static final int OVER = 5;
+
+	private static final int SINGLE = 6;
+
+	private static final int STRING = 7;
+
+	/**
+	 * Scans the given file, passing its directives to the given consumer.
+	 *
+	 * @param path
+	 *            the file to scan
+	 * @param directives
+	 *            the consumer of the statements starting with '#'
+	 * @return the background of the file
+	 */
+	public static Source scan(Path path, Consumer<String> directives) {
+		if (null == path)
+			throw new IllegalArgumentException("Illegal 'path' argument in Source.scan(Path, Consumer<String>): " + path);
+		if (null == directives)
+			throw new IllegalArgumentException("Illegal 'directives' argument in Source.scan(Path, Consumer<String>): " + directives);
+		Source result = new Source(path);
+		try (InputStream stream = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+			ByteArrayOutputStream directive = null;
+			Dependencies.Builder statement = null;
+			long from = 0L;
+			long position = 0L;
+			boolean started = false;
+			int state = NORMAL;
+			int ch;
+			while ((ch = stream.read()) >= 0) {
+				if (DOT == state) {
+					// the dot ends the statement unless it is part of '..'
+					if ('.' == ch) {
+						if (null != directive)
+							directive.write(ch);
+						else if (null != statement)
+							statement.append('.', false);
+						state = NORMAL;
+						position += 1;
+						continue;
+					}
+					if (null != directive) {
+						result.split(directive, directives);
+						directive = null;
+					} else if (null != statement) {
+						result.add(from, position, statement.build());
+						statement = null;
+					}
+					from = position;
+					started = false;
+					state = NORMAL;
+				}
+				if (NORMAL == state && !started && '\n' != ch && '\r' != ch && '\f' != ch && '\t' != ch && ' ' != ch && '%' != ch) {
+					started = true;
+					if ('#' == ch)
+						directive = new ByteArrayOutputStream();
+					else
+						statement = new Dependencies.Builder();
+				}
+				if (null != directive)
+					directive.write(ch);
+				switch (state) {
+				case NORMAL:
+					if ('"' == ch)
+						state = STRING;
+					else if ('.' == ch)
+						state = DOT;
+					else if ('%' == ch)
+						state = COMMENT;
+					if (null != statement && COMMENT != state)
+						statement.append((char) ch, STRING == state);
+					break;
+				case STRING:
+					if ('\\' == ch)
+						state = ESCAPE;
+					else if ('"' == ch)
+						state = NORMAL;
+					if (null != statement)
+						statement.append((char) ch, true);
+					break;
+				case ESCAPE:
+					state = STRING;
+					if (null != statement)
+						statement.append((char) ch, true);
+					break;
+				case COMMENT:
+					state = '\n' == ch ? NORMAL : '*' == ch ? MULTI : SINGLE;
+					break;
+				case SINGLE:
+					if ('\n' == ch)
+						state = NORMAL;
+					break;
+				case MULTI:
+					if ('*' == ch)
+						state = OVER;
+					break;
+				case OVER:
+					state = '%' == ch ? NORMAL : '*' == ch ? OVER : MULTI;
+					break;
+				default:
+				}
+				position += 1;
+			}
+			if (null != directive)
+				result.split(directive, directives);
+			else if (null != statement)
+				result.add(from, position, statement.build());
+		} catch (IOException e) {
+			Logger.error("cannot read from '" + path.getFileName().toString() + "'");
+		}
+		return result;
+	}
+
+	private final List<Dependencies> dependencies = new ArrayList<>();
+
+	private long[] ends = new long[8];
+
+	private final Map<Dependencies, Integer> indices = new HashMap<>();
+
+	private int[] kinds = new int[8];
+
+	private final Path path;
+
+	private int size = 0;
+
+	private long[] starts = new long[8];
+
+	private Source(Path path) {
+		this.path = path;
+	}
+
+	private void add(long start, long end, Dependencies statement) {
+		int kind = indices.computeIfAbsent(statement, key -> {
+			dependencies.add(key);
+			return dependencies.size() - 1;
+		});
+		// runs of alike statements are kept as a single block
+		if (size > 0 && start == ends[size - 1] && kind == kinds[size - 1]) {
+			ends[size - 1] = end;
+			return;
+		}
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, 2 * size);
+			ends = Arrays.copyOf(ends, 2 * size);
+			kinds = Arrays.copyOf(kinds, 2 * size);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		kinds[size] = kind;
+		size += 1;
+	}
+
+	/**
+	 * Copies the background into the given emitter, straight from the file.
+	 */
+	public void emit(Emitter out) throws IOException {
+		if (null == out)
+			throw new IllegalArgumentException("Illegal 'out' argument in Source.emit(Emitter): " + out);
+		copy(out, null);
+	}
+
+	/**
+	 * Copies the statements defining any of the given predicates into the
+	 * given emitter, along with those that must always be kept.
+	 */
+	public void emit(Emitter out, Set<String> relevant) throws IOException {
+		if (null == out)
+			throw new IllegalArgumentException("Illegal 'out' argument in Source.emit(Emitter, Set<String>): " + out);
+		if (null == relevant)
+			throw new IllegalArgumentException("Illegal 'relevant' argument in Source.emit(Emitter, Set<String>): " + relevant);
+		copy(out, relevant);
+	}
+
+	private void copy(Emitter out, Set<String> relevant) throws IOException {
+		if (size > 0)
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				long start = -1L;
+				long end = -1L;
+				for (int i = 0; i < size; i++)
+					if (null == relevant || dependencies.get(kinds[i]).isRelevant(relevant)) {
+						if (starts[i] != end) {
+							if (start >= 0L)
+								out.transfer(channel, start, end - start).line();
+							start = starts[i];
+						}
+						end = ends[i];
+					}
+				if (start >= 0L)
+					out.transfer(channel, start, end - start).line();
+			}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Source other = (Source) obj;
+		return path.equals(other.path) && size == other.size && Arrays.equals(Arrays.copyOf(starts, size), Arrays.copyOf(other.starts, size))
+				&& Arrays.equals(Arrays.copyOf(ends, size), Arrays.copyOf(other.ends, size));
+	}
+
+	/**
+	 * Returns the distinct dependencies of the statements in the background.
+	 */
+	public final Collection<Dependencies> getDependencies() {
+		return Collections.unmodifiableList(dependencies);
+	}
+
+	public final Path getPath() {
+		return path;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + path.hashCode();
+		result = prime * result + size;
+		return result;
+	}
+
+	public final boolean isEmpty() {
+		return 0 == size;
+	}
+
+	private void split(ByteArrayOutputStream directive, Consumer<String> directives) {
+		for (String statement : new Splitter(InputStates.INITIAL).parse(new ByteArrayInputStream(directive.toByteArray())))
+			directives.accept(statement);
+	}
+
+	/**
+	 * Returns the number of bytes of the background.
+	 */
+	public final long length() {
+		long result = 0L;
+		for (int i = 0; i < size; i++)
+			result += ends[i] - starts[i];
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (%d bytes of background)", path, length());
+	}
+
+}
@@ -3,6 +3,9 @@
  */
 package xhail.core.statements;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import xhail.core.Buildable;
 import xhail.core.terms.Atom;
 
@@ -185,6 +188,58 @@ public class Example {
 		return result;
 	}
 
+	/**
+	 * Returns the example as a fact for the generic rules returned by
+	 * {@link #asRules(Example[])}: defeasible examples carry their weight and
+	 * priority, the others only their sign.
+	 */
+	public final String asFact() {
+		if (defeasible)
+			return String.format("example(%s,%d,%d,%d).", atom, negated ? -1 : 1, weight, priority);
+		return String.format("example(%s,%d).", atom, negated ? -1 : 1);
+	}
+
+	/**
+	 * Returns the rules that give the examples encoded as facts the same
+	 * meaning {@link #asClauses()} gives them, that is one rule for each kind of
+	 * constraint and one rule for each predicate of the examples telling when
+	 * an example holds.
+	 */
+	public static String[] asRules(Example[] examples) {
+		if (null == examples)
+			throw new IllegalArgumentException("Illegal 'examples' argument in Example.asRules(Example[]): " + examples);
+		boolean defeasibles = false;
+		boolean strict = false;
+		Set<String> predicates = new LinkedHashSet<>();
+		for (Example example : examples) {
+			if (example.defeasible)
+				defeasibles = true;
+			else
+				strict = true;
+			String atom = example.atom.getIdentifier();
+			if (example.atom.getArity() > 0) {
+				atom += "(V1";
+				for (int i = 2; i <= example.atom.getArity(); i++)
+					atom += ",V" + i;
+				atom += ")";
+			}
+			predicates.add(String.format("example_holds(%s):-example_atom(%s),%s.", atom, atom, atom));
+		}
+		Set<String> result = new LinkedHashSet<>();
+		if (defeasibles) {
+			result.add("example_atom(V1):-example(V1,V2,V3,V4).");
+			result.add(":~ not example_holds(V1),example(V1,1,V2,V3). [V2@V3,V1]");
+			result.add(":~ example_holds(V1),example(V1,-1,V2,V3). [V2@V3,V1]");
+		}
+		if (strict) {
+			result.add("example_atom(V1):-example(V1,V2).");
+			result.add(":-not example_holds(V1),example(V1,1).");
+			result.add(":-example_holds(V1),example(V1,-1).");
+		}
+		result.addAll(predicates);
+		return result.toArray(new String[result.size()]);
+	}
+
 	public boolean isNegated() {
 		return negated;
 	}
@@ -166,12 +166,11 @@ public class Atom implements Term, Iterable<Atom>, Comparable<Atom> {
 
 	@Override
 	public int compareTo(Atom o) {
-		int result = identifier.compareTo(o.identifier);
+		int result = Term.compare(this, o);
 		if (0 == result)
-			result = o.terms.length - terms.length;
+			result = Integer.compare(priority, o.priority);
 		if (0 == result)
-			for (int i = 0; 0 == result && i < terms.length; i++)
-				result = o.terms[i].toString().compareTo(terms[i].toString());
+			result = Integer.compare(weight, o.weight);
 		return result;
 	}
 
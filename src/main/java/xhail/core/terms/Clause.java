@@ -3,12 +3,14 @@
  */
 package xhail.core.terms;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.TreeSet;
-import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.collections4.iterators.ArrayIterator;
@@ -23,14 +25,7 @@ public class Clause implements Iterable<Literal> {
 
 	public static class Builder implements Buildable<Clause> {
 
-    private class LiteralComparator implements Comparator<Literal> {
-      public int compare(Literal o1, Literal o2) {
-        return Integer.compare(o1.hashCode(), o2.hashCode());
-      }
-    }
-
-		//private Set<Literal> body = new LinkedHashSet<>();
-		private Set<Literal> body = new TreeSet<>(new LiteralComparator());
+		private Set<Literal> body = new LinkedHashSet<>();
 
 		private Atom head = null;
 
@@ -81,13 +76,164 @@ public class Clause implements Iterable<Literal> {
 
 	private final Literal[] body;
 
+	private final int hash;
+
+	/**
+	 * The hashes of the body literals, which do not depend on variable names.
+	 */
+	private final int[] hashes;
+
 	private final Atom head;
 
+	/**
+	 * The numbers of the variables of the head, by first occurrence.
+	 */
+	private final Map<Variable, Integer> numbers = new HashMap<>();
+
+	/**
+	 * Builds the clause: the body is sorted according to the natural ordering
+	 * of its literals, while the hash is computed from invariants that do not
+	 * depend on variable names, so that alpha-equivalent clauses (i.e.
+	 * variants) hash equal.
+	 * 
+	 * @param builder
+	 *            the builder of the clause
+	 */
 	private Clause(Builder builder) {
 		if (null == builder)
 			throw new IllegalArgumentException("Illegal 'builder' argument in Clause(Clause.Builder): " + builder);
 		this.body = builder.body.toArray(new Literal[builder.body.size()]);
+		Arrays.sort(this.body);
 		this.head = builder.head;
+		if (null != head)
+			number(head, numbers);
+		this.hashes = new int[body.length];
+		for (int i = 0; i < body.length; i++)
+			hashes[i] = hash(body[i]);
+		this.hash = hash();
+	}
+
+	private int hash() {
+		final int prime = 31;
+		int result = null == head ? 0 : hash(head, numbers, null);
+		int sum = 0;
+		for (int value : hashes)
+			sum += value;
+		return prime * result + sum;
+	}
+
+	/**
+	 * Variables in the head are hashed by their type and position in the
+	 * head, the others by their type and first occurrence in the literal, so
+	 * that renaming them, or reordering the body, does not affect the result.
+	 */
+	private int hash(Literal literal) {
+		final int prime = 31;
+		int result = hash(literal.getAtom(), numbers, new HashMap<>());
+		result = prime * result + literal.getLevel();
+		result = prime * result + (literal.isNegated() ? 1231 : 1237);
+		return result;
+	}
+
+	private static int hash(Term term, Map<Variable, Integer> head, Map<Variable, Integer> local) {
+		final int prime = 31;
+		if (term instanceof Atom) {
+			Atom atom = (Atom) term;
+			int result = 1;
+			result = prime * result + atom.getIdentifier().hashCode();
+			result = prime * result + atom.getPriority();
+			result = prime * result + atom.getWeight();
+			for (Term nested : atom.getTerms())
+				result = prime * result + hash(nested, head, local);
+			return result;
+		} else if (term instanceof Variable) {
+			Placemarker type = ((Variable) term).getType();
+			Integer number = head.get(term);
+			if (null == number) {
+				local.putIfAbsent((Variable) term, local.size());
+				number = -1 - local.get(term);
+			}
+			return prime * ((null == type) ? 0 : type.hashCode()) + number;
+		} else
+			return term.hashCode();
+	}
+
+	/**
+	 * Matches the given terms under the given renaming of variables, which is
+	 * extended as needed and kept injective; the variables renamed are pushed
+	 * on the given trail.
+	 */
+	private static boolean match(Term one, Term two, Map<Variable, Variable> renaming, Map<Variable, Variable> inverse, List<Variable> trail) {
+		if (one instanceof Atom) {
+			if (!(two instanceof Atom))
+				return false;
+			Atom a = (Atom) one;
+			Atom b = (Atom) two;
+			if (!a.getIdentifier().equals(b.getIdentifier()) || a.getArity() != b.getArity() || a.getPriority() != b.getPriority()
+					|| a.getWeight() != b.getWeight())
+				return false;
+			for (int i = 0; i < a.getArity(); i++)
+				if (!match(a.getTerm(i), b.getTerm(i), renaming, inverse, trail))
+					return false;
+			return true;
+		}
+		if (one instanceof Variable) {
+			if (!(two instanceof Variable))
+				return false;
+			Variable a = (Variable) one;
+			Variable b = (Variable) two;
+			if (null == a.getType() ? null != b.getType() : !a.getType().equals(b.getType()))
+				return false;
+			Variable renamed = renaming.get(a);
+			if (null != renamed)
+				return renamed.equals(b);
+			if (inverse.containsKey(b))
+				return false;
+			renaming.put(a, b);
+			inverse.put(b, a);
+			trail.add(a);
+			return true;
+		}
+		return !(two instanceof Atom) && !(two instanceof Variable) && 0 == Term.compare(one, two);
+	}
+
+	/**
+	 * Matches the body literals from the given index onwards with the unused
+	 * ones of the given clause, backtracking over the candidates.
+	 */
+	private boolean match(int index, Clause other, boolean[] used, Map<Variable, Variable> renaming, Map<Variable, Variable> inverse,
+			List<Variable> trail) {
+		if (index == body.length)
+			return true;
+		Literal one = body[index];
+		for (int j = 0; j < other.body.length; j++) {
+			Literal two = other.body[j];
+			if (used[j] || hashes[index] != other.hashes[j] || one.getLevel() != two.getLevel() || one.isNegated() != two.isNegated()
+					|| !sameSchemes(one.getAtom(), two.getAtom()))
+				continue;
+			int mark = trail.size();
+			if (match(one.getAtom(), two.getAtom(), renaming, inverse, trail)) {
+				used[j] = true;
+				if (match(index + 1, other, used, renaming, inverse, trail))
+					return true;
+				used[j] = false;
+			}
+			while (trail.size() > mark)
+				inverse.remove(renaming.remove(trail.remove(trail.size() - 1)));
+		}
+		return false;
+	}
+
+	private static void number(Term term, Map<Variable, Integer> numbers) {
+		if (term instanceof Atom)
+			for (Term nested : ((Atom) term).getTerms())
+				number(nested, numbers);
+		else if (term instanceof Variable)
+			numbers.putIfAbsent((Variable) term, numbers.size());
+	}
+
+	private static boolean sameSchemes(Atom one, Atom two) {
+		return null == one.getScheme() ? null == two.getScheme() : one.getScheme().equals(two.getScheme());
 	}
 
 	@Override
@@ -99,14 +245,9 @@ public class Clause implements Iterable<Literal> {
 		if (getClass() != obj.getClass())
 			return false;
 		Clause other = (Clause) obj;
-		if (!Arrays.equals(body, other.body))
-			return false;
-		if (head == null) {
-			if (other.head != null)
-				return false;
-		} else if (!head.equals(other.head))
+		if (hash != other.hash || body.length != other.body.length)
 			return false;
-		return true;
+		return isVariant(other);
 	}
 
 	public Literal[] getBody() {
@@ -129,11 +270,32 @@ public class Clause implements Iterable<Literal> {
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + Arrays.hashCode(body);
-		result = prime * result + ((head == null) ? 0 : head.hashCode());
-		return result;
+		return hash;
+	}
+
+	/**
+	 * Checks whether the given clause is a variant of this one, that is if the
+	 * two clauses are equal up to a consistent renaming of their variables, by
+	 * searching for such a renaming.
+	 * 
+	 * @param other
+	 *            the clause to compare with
+	 * @return <code>true</code> if the two clauses are alpha-equivalent
+	 */
+	public boolean isVariant(Clause other) {
+		if (null == other)
+			throw new IllegalArgumentException("Illegal 'other' argument in Clause.isVariant(Clause): " + other);
+		if (body.length != other.body.length)
+			return false;
+		Map<Variable, Variable> renaming = new HashMap<>();
+		Map<Variable, Variable> inverse = new HashMap<>();
+		List<Variable> trail = new ArrayList<>();
+		if (null == head || null == other.head) {
+			if (head != other.head)
+				return false;
+		} else if (!sameSchemes(head, other.head) || !match(head, other.head, renaming, inverse, trail))
+			return false;
+		return match(0, other, new boolean[body.length], renaming, inverse, trail);
 	}
 
 	@Override
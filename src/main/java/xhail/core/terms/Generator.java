@@ -0,0 +1,164 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import xhail.core.facts.Facts;
+import xhail.core.terms.Placemarker.Type;
+
+/**
+ * Lazily enumerates the atoms generated by a scheme, together with the terms
+ * they output, skipping the ones that are facts.
+ *
+ * The choices for each argument are computed once and deduplicated, then
+ * tuples are enumerated by a counter over them into a single buffer. Each
+ * tuple is checked against the facts before building its atom, so that only
+ * the atoms actually returned are ever built.
+ *
+ * @author stefano
+ *
+ */
+public class Generator implements Iterator<Map.Entry<Atom, Collection<Term>>> {
+
+	private static final Term[] NONE = new Term[0];
+
+	private final Term[][] choices;
+
+	private boolean exhausted;
+
+	private final Collection<Atom> facts;
+
+	private final String identifier;
+
+	private final int[] indexes;
+
+	private Map.Entry<Atom, Collection<Term>> next = null;
+
+	private final Term[][][] outputs;
+
+	private final Term[] tuple;
+
+	/**
+	 * @param scheme
+	 *            the scheme to generate atoms from
+	 * @param substitutes
+	 *            the terms for input placemarkers
+	 * @param table
+	 *            the terms for the other placemarkers
+	 * @param facts
+	 *            the atoms not to generate, or <code>null</code>
+	 */
+	public Generator(Scheme scheme, Collection<Term> substitutes, Map<SchemeTerm, Set<Atom>> table, Collection<Atom> facts) {
+		if (null == scheme)
+			throw new IllegalArgumentException("Illegal 'scheme' argument in Generator(Scheme, Collection<Term>, Map<SchemeTerm, Set<Atom>>, Collection<Atom>): "
+					+ scheme);
+		if (null == substitutes)
+			throw new IllegalArgumentException(
+					"Illegal 'substitutes' argument in Generator(Scheme, Collection<Term>, Map<SchemeTerm, Set<Atom>>, Collection<Atom>): " + substitutes);
+		if (null == table)
+			throw new IllegalArgumentException("Illegal 'table' argument in Generator(Scheme, Collection<Term>, Map<SchemeTerm, Set<Atom>>, Collection<Atom>): "
+					+ table);
+		int arity = scheme.getArity();
+		this.choices = new Term[arity][];
+		this.facts = facts;
+		this.identifier = scheme.getIdentifier();
+		this.indexes = new int[arity];
+		this.outputs = new Term[arity][][];
+		this.tuple = new Term[arity];
+		for (int i = 0; i < arity; i++) {
+			SchemeTerm schemeterm = scheme.getTerm(i);
+			Map<Term, Term[]> found = new LinkedHashMap<>();
+			if (schemeterm instanceof Number || schemeterm instanceof Quotation)
+				found.put((Term) schemeterm, NONE);
+			else if (schemeterm instanceof Placemarker) {
+				Placemarker placemarker = (Placemarker) schemeterm;
+				if (Type.INPUT == placemarker.getType())
+					for (Term substitute : substitutes)
+						found.put(substitute, NONE);
+				else if (table.containsKey(placemarker)) {
+					boolean isOutput = Type.OUTPUT == placemarker.getType();
+					for (Atom candidate : table.get(placemarker)) {
+						Term utilise;
+						if (candidate.getIdentifier().equals(placemarker.getIdentifier()) && 1 == candidate.getArity())
+							utilise = candidate.getTerm(0);
+						else
+							utilise = candidate;
+						found.put(utilise, isOutput ? new Term[] { utilise } : NONE);
+					}
+				}
+			} else if (schemeterm instanceof Scheme) {
+				Generator generator = new Generator((Scheme) schemeterm, substitutes, table, null);
+				while (generator.hasNext()) {
+					Map.Entry<Atom, Collection<Term>> entry = generator.next();
+					found.put(entry.getKey(), entry.getValue().toArray(new Term[entry.getValue().size()]));
+				}
+			}
+			choices[i] = found.keySet().toArray(new Term[found.size()]);
+			outputs[i] = found.values().toArray(new Term[found.size()][]);
+			if (0 == choices[i].length)
+				exhausted = true;
+		}
+	}
+
+	private Map.Entry<Atom, Collection<Term>> advance() {
+		while (!exhausted) {
+			for (int i = 0; i < tuple.length; i++)
+				tuple[i] = choices[i][indexes[i]];
+			Map.Entry<Atom, Collection<Term>> result = null;
+			if (!isFact()) {
+				Set<Term> output = new HashSet<>();
+				for (int i = 0; i < tuple.length; i++)
+					for (Term term : outputs[i][indexes[i]])
+						output.add(term);
+				result = new SimpleEntry<>(new Atom.Builder(identifier).addTerms(tuple).build(), output);
+			}
+			step();
+			if (null != result)
+				return result;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (null == next)
+			next = advance();
+		return null != next;
+	}
+
+	private boolean isFact() {
+		if (null == facts)
+			return false;
+		if (facts instanceof Facts)
+			return ((Facts) facts).contains(identifier, tuple);
+		return facts.contains(new Atom.Builder(identifier).addTerms(tuple).build());
+	}
+
+	@Override
+	public Map.Entry<Atom, Collection<Term>> next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		Map.Entry<Atom, Collection<Term>> result = next;
+		next = null;
+		return result;
+	}
+
+	private void step() {
+		for (int i = tuple.length - 1; i >= 0; i--) {
+			if (++indexes[i] < choices[i].length)
+				return;
+			indexes[i] = 0;
+		}
+		exhausted = true;
+	}
+
+}
@@ -70,7 +70,9 @@ public class Literal implements Comparable<Literal> {
 	public int compareTo(Literal o) {
 		int result = atom.compareTo(o.atom);
 		if (0 == result)
-			return Boolean.compare(o.negated, negated);
+			result = Boolean.compare(o.negated, negated);
+		if (0 == result)
+			result = Integer.compare(level, o.level);
 		return result;
 	}
 
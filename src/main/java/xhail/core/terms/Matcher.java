@@ -0,0 +1,213 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import xhail.core.terms.Placemarker.Type;
+
+/**
+ * A scheme compiled into a flat program, one instruction per node of the
+ * scheme in pre-order.
+ *
+ * Each instruction knows the instruction of the enclosing scheme and the
+ * position of its argument there, so that atoms are matched by a single loop
+ * over the program, which keeps the sub-atoms found so far in registers, with
+ * no recursion and no type dispatch on the scheme.
+ *
+ * @author stefano
+ *
+ */
+public class Matcher {
+
+	private static final int CONSTANT = 0;
+
+	private static final int INPUT = 1;
+
+	private static final int NUMBER = 2;
+
+	private static final int OUTPUT = 3;
+
+	private static final int QUOTATION = 4;
+
+	private static final int SCHEME = 5;
+
+	private final int[] arities;
+
+	private final int[] codes;
+
+	private final String[] contents;
+
+	private final boolean hasConstants;
+
+	private final int[] hashes;
+
+	private final String[] identifiers;
+
+	private final int[] parents;
+
+	private final Placemarker[] placemarkers;
+
+	private final int[] positions;
+
+	private final int size;
+
+	private final int[] values;
+
+	public Matcher(Scheme scheme) {
+		if (null == scheme)
+			throw new IllegalArgumentException("Illegal 'scheme' argument in Matcher(Scheme): " + scheme);
+		List<SchemeTerm> nodes = new ArrayList<>();
+		List<Integer> parents = new ArrayList<>();
+		List<Integer> positions = new ArrayList<>();
+		compile(scheme, -1, -1, nodes, parents, positions);
+		this.size = nodes.size();
+		this.arities = new int[size];
+		this.codes = new int[size];
+		this.contents = new String[size];
+		this.hashes = new int[size];
+		this.identifiers = new String[size];
+		this.parents = new int[size];
+		this.placemarkers = new Placemarker[size];
+		this.positions = new int[size];
+		this.values = new int[size];
+		boolean hasConstants = false;
+		for (int k = 0; k < size; k++) {
+			SchemeTerm node = nodes.get(k);
+			this.parents[k] = parents.get(k);
+			this.positions[k] = positions.get(k);
+			if (node instanceof Scheme) {
+				codes[k] = SCHEME;
+				identifiers[k] = ((Scheme) node).getIdentifier();
+				hashes[k] = identifiers[k].hashCode();
+				arities[k] = ((Scheme) node).getArity();
+			} else if (node instanceof Placemarker) {
+				Type type = ((Placemarker) node).getType();
+				codes[k] = Type.INPUT == type ? INPUT : Type.OUTPUT == type ? OUTPUT : CONSTANT;
+				placemarkers[k] = (Placemarker) node;
+			} else if (node instanceof Number) {
+				codes[k] = NUMBER;
+				values[k] = ((Number) node).getValue();
+				hasConstants = true;
+			} else if (node instanceof Quotation) {
+				codes[k] = QUOTATION;
+				contents[k] = ((Quotation) node).getContent();
+				hasConstants = true;
+			}
+		}
+		this.hasConstants = hasConstants;
+	}
+
+	private static void compile(SchemeTerm node, int parent, int position, List<SchemeTerm> nodes, List<Integer> parents, List<Integer> positions) {
+		int index = nodes.size();
+		nodes.add(node);
+		parents.add(parent);
+		positions.add(position);
+		if (node instanceof Scheme)
+			for (int i = 0; i < ((Scheme) node).getArity(); i++)
+				compile(((Scheme) node).getTerm(i), index, i, nodes, parents, positions);
+	}
+
+	/**
+	 * Returns the input terms of the given candidate, skipping the sub-atoms
+	 * that do not fit their scheme.
+	 */
+	public Collection<Term> findSubstitutes(Term candidate) {
+		if (null == candidate)
+			throw new IllegalArgumentException("Illegal 'candidate' argument in Matcher.findSubstitutes(Term): " + candidate);
+		if (!(candidate instanceof Atom) || !fits(0, (Atom) candidate))
+			return Collections.emptySet();
+		Set<Term> result = new HashSet<>();
+		Term[] registers = new Term[size];
+		registers[0] = candidate;
+		for (int k = 1; k < size; k++) {
+			Term parent = registers[parents[k]];
+			if (null == parent)
+				continue;
+			Term term = ((Atom) parent).getTerm(positions[k]);
+			if (SCHEME == codes[k])
+				registers[k] = term instanceof Atom && fits(k, (Atom) term) ? term : null;
+			else if (INPUT == codes[k])
+				result.add(term);
+		}
+		return result;
+	}
+
+	private boolean fits(int k, Atom atom) {
+		return hashes[k] == atom.getIdentifier().hashCode() && arities[k] == atom.getArity() && identifiers[k].equals(atom.getIdentifier());
+	}
+
+	/**
+	 * Checks whether the given atom matches the scheme: if substitutes are
+	 * given, input terms must be among them, and if outputs are given, output
+	 * terms are added to them.
+	 */
+	public boolean match(Atom atom, Collection<Term> substitutes, Collection<Term> outputs) {
+		if (null == atom)
+			throw new IllegalArgumentException("Illegal 'atom' argument in Matcher.match(Atom, Collection<Term>, Collection<Term>): " + atom);
+		if (!fits(0, atom))
+			return false;
+		Term[] registers = new Term[size];
+		registers[0] = atom;
+		for (int k = 1; k < size; k++) {
+			Term term = ((Atom) registers[parents[k]]).getTerm(positions[k]);
+			switch (codes[k]) {
+			case NUMBER:
+				if (!(term instanceof Number) || ((Number) term).getValue() != values[k])
+					return false;
+				break;
+			case QUOTATION:
+				if (!(term instanceof Quotation) || !contents[k].equals(((Quotation) term).getContent()))
+					return false;
+				break;
+			case INPUT:
+				if (null != substitutes && !substitutes.contains(term))
+					return false;
+				break;
+			case OUTPUT:
+				if (null != outputs)
+					outputs.add(term);
+				break;
+			case SCHEME:
+				if (!(term instanceof Atom) || !fits(k, (Atom) term))
+					return false;
+				registers[k] = term;
+				break;
+			default:
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the given term is an instance of the scheme whose
+	 * placemarkers are all filled with terms of their type.
+	 */
+	public boolean subsumes(Term term, Collection<Atom> facts) {
+		if (null == term)
+			throw new IllegalArgumentException("Illegal 'term' argument in Matcher.subsumes(Term, Collection<Atom>): " + term);
+		if (null == facts)
+			throw new IllegalArgumentException("Illegal 'facts' argument in Matcher.subsumes(Term, Collection<Atom>): " + facts);
+		if (hasConstants || !(term instanceof Atom) || !fits(0, (Atom) term))
+			return false;
+		Term[] registers = new Term[size];
+		registers[0] = term;
+		for (int k = 1; k < size; k++) {
+			Term current = ((Atom) registers[parents[k]]).getTerm(positions[k]);
+			if (SCHEME == codes[k]) {
+				if (!(current instanceof Atom) || !fits(k, (Atom) current))
+					return false;
+				registers[k] = current;
+			} else if (!SchemeTerm.subsumes(placemarkers[k], current, facts))
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -262,6 +262,8 @@ public class Scheme implements SchemeTerm, Iterable<Scheme> {
 				((Scheme) term).getPlacemarkers(result);
 	}
 
+	private Matcher matcher;
+
 	private Placemarker[] placemarkers;
 
 	public final boolean hasPlacemarkers() {
@@ -277,6 +279,15 @@ public class Scheme implements SchemeTerm, Iterable<Scheme> {
 		return placemarkers;
 	}
 
+	/**
+	 * Returns the matcher compiled from this scheme, built on first use.
+	 */
+	public final Matcher getMatcher() {
+		if (null == matcher)
+			matcher = new Matcher(this);
+		return matcher;
+	}
+
 	public final boolean hasTypes() {
 		return getPlacemarkers().length > 0;
 	}
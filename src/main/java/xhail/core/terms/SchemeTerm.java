@@ -4,13 +4,19 @@
 package xhail.core.terms;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import xhail.core.facts.FactOverlay;
+import xhail.core.facts.FactStore;
+import xhail.core.facts.Facts;
+import xhail.core.facts.Union;
 import xhail.core.statements.ModeB;
 import xhail.core.statements.ModeH;
 import xhail.core.terms.Placemarker.Type;
@@ -25,6 +31,36 @@ import xhail.core.terms.Placemarker.Type;
  */
 public interface SchemeTerm {
 
+	/**
+	 * Returns the facts that may be subsumed by the given scheme term, possibly
+	 * more than once: the atoms with its predicate for a scheme, and the atoms
+	 * of its type together with the facts they type for a placemarker. Facts
+	 * that cannot be queried by predicate are returned as they are.
+	 */
+	public static Collection<Atom> candidates(SchemeTerm scheme, Collection<Atom> facts) {
+		if (null == scheme)
+			throw new IllegalArgumentException("Illegal 'scheme' argument in SchemeTerm.candidates(SchemeTerm, Collection<Atom>): " + scheme);
+		if (null == facts)
+			throw new IllegalArgumentException("Illegal 'facts' argument in SchemeTerm.candidates(SchemeTerm, Collection<Atom>): " + facts);
+		if (!(facts instanceof Facts))
+			return facts;
+		Facts index = (Facts) facts;
+		if (scheme instanceof Scheme)
+			return index.select(((Scheme) scheme).getIdentifier(), ((Scheme) scheme).getArity());
+		if (scheme instanceof Placemarker) {
+			Collection<Atom> types = index.select(((Placemarker) scheme).getIdentifier(), 1);
+			List<Atom> result = new ArrayList<>(2 * types.size());
+			for (Atom type : types) {
+				result.add(type);
+				Term term = type.getTerm(0);
+				if (term instanceof Atom && index.contains(term))
+					result.add((Atom) term);
+			}
+			return result;
+		}
+		return Collections.emptySet();
+	}
+
 	public static Map<Atom, Collection<Term>> generateAndOutput(Scheme scheme, Collection<Term> substitutes, Map<SchemeTerm, Set<Atom>> table,
 			Collection<Atom> facts) {
 		if (null == scheme)
@@ -43,12 +79,10 @@ public interface SchemeTerm {
 			throw new IllegalArgumentException(
 					"Illegal 'facts' argument in SchemeTerm.generateAndOutput(Scheme, Collection<Term>, Map<SchemeTerm, Set<Atom>>, Collection<Atom>): "
 							+ facts);
-		Map<Atom, Collection<Term>> generated = generateAndOutput(scheme, substitutes, table);
 		Map<Atom, Collection<Term>> result = new HashMap<>();
-		for (Atom atom : generated.keySet()) {
-			// System.err.println(atom);
-			if (!facts.contains(atom))
-				result.put(atom, generated.get(atom));
+		for (Generator generator = new Generator(scheme, substitutes, table, facts); generator.hasNext();) {
+			Map.Entry<Atom, Collection<Term>> entry = generator.next();
+			result.put(entry.getKey(), entry.getValue());
 		}
 		return result;
 	}
@@ -63,67 +97,11 @@ public interface SchemeTerm {
 		if (null == table)
 			throw new IllegalArgumentException(
 					"Illegal 'table' argument in SchemeTerm.generateAndOutput(Scheme, Collection<Term>, Map<SchemeTerm, Set<Atom>>): " + table);
-		Map<Atom.Builder, Collection<Term>> builders = new HashMap<>();
-		builders.put(new Atom.Builder(scheme.getIdentifier()), Collections.emptySet());
-		for (int i = 0; i < scheme.getArity(); i++) {
-			SchemeTerm schemeterm = scheme.getTerm(i);
-			Map<Atom.Builder, Collection<Term>> temporary = new HashMap<>();
-			if (schemeterm instanceof Number) {
-				for (Atom.Builder builder : builders.keySet()) {
-					Set<Term> value = new HashSet<>(builders.get(builder));
-					Atom.Builder key = builder.addTerm((Number) schemeterm);
-					temporary.put(key, value);
-				}
-			} else if (schemeterm instanceof Quotation) {
-				for (Atom.Builder builder : builders.keySet()) {
-					Set<Term> value = new HashSet<>(builders.get(builder));
-					Atom.Builder key = builder.addTerm((Quotation) schemeterm);
-					temporary.put(key, value);
-				}
-			} else if (schemeterm instanceof Placemarker) {
-				Placemarker placemarker = (Placemarker) schemeterm;
-				if (Type.INPUT == placemarker.getType()) {
-					for (Atom.Builder builder : builders.keySet()) {
-						for (Term substitute : substitutes) {
-							Set<Term> value = new HashSet<>(builders.get(builder));
-							Atom.Builder key = builder.clone().addTerm(substitute);
-							temporary.put(key, value);
-						}
-					}
-				} else {
-					boolean isOutput = Type.OUTPUT == placemarker.getType();
-					Collection<Atom> candidates = table.get(placemarker);
-					for (Atom.Builder builder : builders.keySet()) {
-						for (Atom candidate : candidates) {
-							Term utilise;
-							if (candidate.getIdentifier().equals(placemarker.getIdentifier()) && 1 == candidate.getArity())
-								utilise = candidate.getTerm(0);
-							else
-								utilise = candidate;
-							Set<Term> value = new HashSet<>(builders.get(builder));
-							if (isOutput)
-								value.add(utilise);
-							Atom.Builder key = builder.clone().addTerm(utilise);
-							temporary.put(key, value);
-						}
-					}
-				}
-			} else { // if (schemeterm instanceof Scheme)
-				Map<Atom, Collection<Term>> returned = generateAndOutput((Scheme) schemeterm, substitutes, table);
-				for (Atom.Builder builder : builders.keySet()) {
-					for (Atom atom : returned.keySet()) {
-						Set<Term> value = new HashSet<>(builders.get(builder));
-						value.addAll(returned.get(atom));
-						Atom.Builder key = builder.clone().addTerm(atom);
-						temporary.put(key, value);
-					}
-				}
-			}
-			builders = temporary;
-		}
 		Map<Atom, Collection<Term>> result = new HashMap<>();
-		for (Atom.Builder builder : builders.keySet())
-			result.put(builder.build(), builders.get(builder));
+		for (Generator generator = new Generator(scheme, substitutes, table, null); generator.hasNext();) {
+			Map.Entry<Atom, Collection<Term>> entry = generator.next();
+			result.put(entry.getKey(), entry.getValue());
+		}
 		return result;
 	}
 
@@ -154,42 +132,8 @@ public interface SchemeTerm {
 			throw new IllegalArgumentException("Illegal 'atom' argument in SchemeTerm.matchAndOutput(Scheme, Atom, Collection<Term>): " + atom);
 		if (null == substitutes)
 			throw new IllegalArgumentException("Illegal 'substitutes' argument in SchemeTerm.matchAndOutput(Scheme, Atom, Collection<Term>): " + substitutes);
-		if (!atom.getIdentifier().equals(scheme.getIdentifier()) || atom.getArity() != scheme.getArity())
-			return null;
 		Set<Term> result = new HashSet<>();
-		for (int i = 0; i < scheme.getArity(); i++) {
-			SchemeTerm schemeterm = scheme.getTerm(i);
-			if (schemeterm instanceof Number) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Number))
-					return null;
-				if (((Number) term).getValue() != ((Number) schemeterm).getValue())
-					return null;
-			} else if (schemeterm instanceof Quotation) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Quotation))
-					return null;
-				if (((Quotation) term).getContent() == ((Quotation) schemeterm).getContent())
-					return null;
-			} else if (schemeterm instanceof Placemarker) {
-				Placemarker placemarker = (Placemarker) schemeterm;
-				if (Type.INPUT == placemarker.getType()) {
-					if (!substitutes.contains(atom.getTerm(i)))
-						return null;
-				} else if (Type.OUTPUT == placemarker.getType())
-					result.add(atom.getTerm(i));
-			} else if (schemeterm instanceof Scheme) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Atom))
-					return null;
-				Collection<Term> subresult = matchAndOutput((Scheme) schemeterm, (Atom) term, substitutes);
-				if (null == subresult)
-					return null;
-				result.addAll(subresult);
-			} else
-				return null;
-		}
-		return result;
+		return scheme.getMatcher().match(atom, substitutes, result) ? result : null;
 	}
 
 	/**
@@ -207,37 +151,7 @@ public interface SchemeTerm {
 			throw new IllegalArgumentException("Illegal 'atom' argument in SchemeTerm.isMatching(Scheme, Atom, Collection<Term>): " + atom);
 		if (null == substitutes)
 			throw new IllegalArgumentException("Illegal 'substitutes' argument in SchemeTerm.isMatching(Scheme, Atom, Collection<Term>): " + substitutes);
-		if (!atom.getIdentifier().equals(scheme.getIdentifier()) || atom.getArity() != scheme.getArity())
-			return false;
-		for (int i = 0; i < scheme.getArity(); i++) {
-			SchemeTerm schemeterm = scheme.getTerm(i);
-			if (schemeterm instanceof Number) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Number))
-					return false;
-				if (((Number) term).getValue() != ((Number) schemeterm).getValue())
-					return false;
-			} else if (schemeterm instanceof Quotation) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Quotation))
-					return false;
-				if (((Quotation) term).getContent() == ((Quotation) schemeterm).getContent())
-					return false;
-			} else if (schemeterm instanceof Placemarker) {
-				Placemarker placemarker = (Placemarker) schemeterm;
-				if (Type.INPUT == placemarker.getType())
-					if (!substitutes.contains(atom.getTerm(i)))
-						return false;
-			} else if (schemeterm instanceof Scheme) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Atom))
-					return false;
-				if (!isMatching((Scheme) schemeterm, (Atom) term, substitutes))
-					return false;
-			} else
-				return false;
-		}
-		return true;
+		return scheme.getMatcher().match(atom, substitutes, null);
 	}
 
 	/**
@@ -252,33 +166,7 @@ public interface SchemeTerm {
 			throw new IllegalArgumentException("Illegal 'scheme' argument in SchemeTerm.isMatching(Scheme, Atom): " + scheme);
 		if (null == atom)
 			throw new IllegalArgumentException("Illegal 'atom' argument in SchemeTerm.isMatching(Scheme, Atom): " + atom);
-		if (!atom.getIdentifier().equals(scheme.getIdentifier()) || atom.getArity() != scheme.getArity())
-			return false;
-		for (int i = 0; i < scheme.getArity(); i++) {
-			SchemeTerm schemeterm = scheme.getTerm(i);
-			if (schemeterm instanceof Number) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Number))
-					return false;
-				if (((Number) term).getValue() != ((Number) schemeterm).getValue())
-					return false;
-			} else if (schemeterm instanceof Quotation) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Quotation))
-					return false;
-				if (((Quotation) term).getContent() == ((Quotation) schemeterm).getContent())
-					return false;
-			} else if (schemeterm instanceof Placemarker) {
-			} else if (schemeterm instanceof Scheme) {
-				Term term = atom.getTerm(i);
-				if (!(term instanceof Atom))
-					return false;
-				if (!isMatching((Scheme) schemeterm, (Atom) term))
-					return false;
-			} else
-				return false;
-		}
-		return true;
+		return scheme.getMatcher().match(atom, null, null);
 	}
 
 	public static Map<SchemeTerm, Set<Atom>> lookup(final ModeH[] modeHs, final ModeB[] modeBs, final Collection<Atom> facts) {
@@ -305,7 +193,7 @@ public interface SchemeTerm {
 		}
 		for (SchemeTerm scheme : result.keySet()) {
 			Set<Atom> part = result.get(scheme);
-			for (Atom fact : facts) {
+			for (Atom fact : candidates(scheme, facts)) {
 				if (SchemeTerm.subsumes(scheme, fact, facts))
 					part.add(fact);
 			}
@@ -313,6 +201,43 @@ public interface SchemeTerm {
 		return result;
 	}
 
+	/**
+	 * Builds the table of an overlay from the one of its base. Whether a fact
+	 * belongs to a part only depends on the type atoms of the placemarkers of
+	 * its key, hence parts whose type atoms are untouched by the overlay just
+	 * extend the shared base part with the added atoms, and only the others are
+	 * built again from scratch.
+	 */
+	public static Map<SchemeTerm, Set<Atom>> lookup(final Map<SchemeTerm, Set<Atom>> table, final FactOverlay facts) {
+		if (null == table)
+			throw new IllegalArgumentException("Illegal 'table' argument in SchemeTerm.lookup(Map<SchemeTerm, Set<Atom>>, FactOverlay): " + table);
+		if (null == facts)
+			throw new IllegalArgumentException("Illegal 'facts' argument in SchemeTerm.lookup(Map<SchemeTerm, Set<Atom>>, FactOverlay): " + facts);
+		FactStore added = facts.getAdded();
+		Map<SchemeTerm, Set<Atom>> result = new HashMap<>();
+		for (Map.Entry<SchemeTerm, Set<Atom>> entry : table.entrySet()) {
+			SchemeTerm scheme = entry.getKey();
+			boolean touched = !facts.getRemoved().isEmpty();
+			if (scheme instanceof Placemarker)
+				touched |= !added.select(((Placemarker) scheme).getIdentifier(), 1).isEmpty();
+			else
+				for (Placemarker placemarker : ((Scheme) scheme).getPlacemarkers())
+					touched |= !added.select(placemarker.getIdentifier(), 1).isEmpty();
+			// added facts typed by untouched placemarkers are not found by type
+			Set<Atom> part = new HashSet<>();
+			for (Atom fact : touched ? candidates(scheme, facts) : scheme instanceof Scheme ? candidates(scheme, added) : added)
+				if (SchemeTerm.subsumes(scheme, fact, facts))
+					part.add(fact);
+			if (touched)
+				result.put(scheme, part);
+			else if (part.isEmpty())
+				result.put(scheme, entry.getValue());
+			else
+				result.put(scheme, new Union<>(entry.getValue(), part));
+		}
+		return result;
+	}
+
 	public static boolean subsumes(SchemeTerm scheme, Term term, Collection<Atom> facts) {
 		if (null == scheme)
 			throw new IllegalArgumentException("Illegal 'scheme' argument in SchemeTerm.subsumes(SchemeTerm, Term, Collection<Atom>): " + scheme);
@@ -320,52 +245,67 @@ public interface SchemeTerm {
 			throw new IllegalArgumentException("Illegal 'term' argument in SchemeTerm.subsumes(SchemeTerm, Term, Collection<Atom>): " + term);
 		if (null == facts)
 			throw new IllegalArgumentException("Illegal 'facts' argument in SchemeTerm.subsumes(SchemeTerm, Term, Collection<Atom>): " + facts);
-		if (scheme instanceof Scheme) {
-			Scheme current = (Scheme) scheme;
-			if (!(term instanceof Atom))
-				return false;
-			Atom atom = (Atom) term;
-			if (!atom.getIdentifier().equals(current.getIdentifier()) || atom.getArity() != current.getArity())
-				return false;
-			for (int i = 0; i < current.getArity(); i++)
-				if (!subsumes(current.getTerm(i), atom.getTerm(i), facts))
-					return false;
-			return true;
-		} else if (scheme instanceof Placemarker) {
+		if (scheme instanceof Scheme)
+			return ((Scheme) scheme).getMatcher().subsumes(term, facts);
+		else if (scheme instanceof Placemarker) {
 			Placemarker current = (Placemarker) scheme;
 			if (term instanceof Variable)
 				return false;
-			if (facts.contains(new Atom.Builder(current.getIdentifier()).addTerm(term).build()))
-				return true;
 			if (term instanceof Atom) {
 				Atom atom = (Atom) term;
-				return atom.getIdentifier().equals(current.getIdentifier()) && 1 == atom.getArity();
+				if (atom.getIdentifier().equals(current.getIdentifier()) && 1 == atom.getArity())
+					return true;
 			}
-			return false;
+			if (facts instanceof Facts)
+				return ((Facts) facts).contains(current.getIdentifier(), term);
+			return facts.contains(new Atom.Builder(current.getIdentifier()).addTerm(term).build());
 		} else
 			return false;
 	}
 
+	/**
+	 * Returns the position of the first argument of the scheme that is an input
+	 * placemarker, or <code>-1</code> if there is none.
+	 */
+	public static int findInput(Scheme scheme) {
+		if (null == scheme)
+			throw new IllegalArgumentException("Illegal 'scheme' argument in SchemeTerm.findInput(Scheme): " + scheme);
+		for (int i = 0; i < scheme.getArity(); i++) {
+			SchemeTerm term = scheme.getTerm(i);
+			if (term instanceof Placemarker && Type.INPUT == ((Placemarker) term).getType())
+				return i;
+		}
+		return -1;
+	}
+
 	public static Collection<Term> findSubstitutes(Scheme scheme, Term candidate) {
 		if (null == scheme)
 			throw new IllegalArgumentException("Illegal 'scheme' argument in SchemeTerm.findSubstitutes(Scheme, Term): " + scheme);
 		if (null == candidate)
 			throw new IllegalArgumentException("Illegal 'candidate' argument in Scheme.findSubstitutes(Scheme, Term): " + candidate);
-		if (!(candidate instanceof Atom))
-			return Collections.emptySet();
-		Atom atom = (Atom) candidate;
-		if (!atom.getIdentifier().equals(scheme.getIdentifier()) || atom.getArity() != scheme.getArity())
-			return Collections.emptySet();
-		Set<Term> result = new HashSet<>();
-		for (int i = 0; i < scheme.getArity(); i++) {
-			SchemeTerm term = scheme.getTerm(i);
-			if (term instanceof Placemarker) {
-				Placemarker placemarker = (Placemarker) term;
-				if (placemarker.getType() == Type.INPUT)
-					result.add(atom.getTerm(i));
-			} else if (term instanceof Scheme)
-				result.addAll(findSubstitutes((Scheme) term, atom.getTerm(i)));
-		}
+		return scheme.getMatcher().findSubstitutes(candidate);
+	}
+
+	/**
+	 * Returns the atoms of the given part of the table that have the given term
+	 * at the given position, looked up in the argument index of the facts the
+	 * part was built from.
+	 */
+	public static Collection<Atom> select(Scheme scheme, Set<Atom> part, Facts facts, int position, Term term) {
+		if (null == scheme)
+			throw new IllegalArgumentException("Illegal 'scheme' argument in SchemeTerm.select(Scheme, Set<Atom>, Facts, int, Term): " + scheme);
+		if (null == part)
+			throw new IllegalArgumentException("Illegal 'part' argument in SchemeTerm.select(Scheme, Set<Atom>, Facts, int, Term): " + part);
+		if (null == facts)
+			throw new IllegalArgumentException("Illegal 'facts' argument in SchemeTerm.select(Scheme, Set<Atom>, Facts, int, Term): " + facts);
+		if (position < 0 || position >= scheme.getArity())
+			throw new IllegalArgumentException("Illegal 'position' argument in SchemeTerm.select(Scheme, Set<Atom>, Facts, int, Term): " + position);
+		if (null == term)
+			throw new IllegalArgumentException("Illegal 'term' argument in SchemeTerm.select(Scheme, Set<Atom>, Facts, int, Term): " + term);
+		List<Atom> result = new ArrayList<>();
+		for (Atom atom : facts.select(scheme.getIdentifier(), scheme.getArity(), position, term))
+			if (part.contains(atom))
+				result.add(atom);
 		return result;
 	}
 
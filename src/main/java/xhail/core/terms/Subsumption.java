@@ -0,0 +1,235 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embeddings between clauses, a form of theta-subsumption restricted to
+ * renamings, and the reductions of the generalisation they allow.
+ *
+ * Clauses are compared by their signatures first, that is by the predicates,
+ * signs and levels of their literals, kept as bitmaps and counts, so that most
+ * pairs are told apart without trying any substitution.
+ *
+ * @author stefano
+ *
+ */
+public class Subsumption {
+
+	/**
+	 * The kinds of literals in a clause, as a bitmap over the given dictionary
+	 * of kinds and as counts.
+	 */
+	private static class Signature {
+
+		private final BitSet bitmap = new BitSet();
+
+		private final Map<Integer, Integer> counts = new HashMap<>();
+
+		private Signature(Clause clause, Map<String, Integer> kinds) {
+			for (Literal literal : clause.getBody()) {
+				int kind = kinds.computeIfAbsent(kind(literal), key -> kinds.size());
+				bitmap.set(kind);
+				counts.merge(kind, 1, Integer::sum);
+			}
+		}
+
+		/**
+		 * Checks whether each kind of literal here is found in the given
+		 * signature, at least as many times.
+		 */
+		private boolean fits(Signature other) {
+			BitSet rest = (BitSet) bitmap.clone();
+			rest.andNot(other.bitmap);
+			if (!rest.isEmpty())
+				return false;
+			for (Map.Entry<Integer, Integer> entry : counts.entrySet())
+				if (entry.getValue() > other.counts.get(entry.getKey()))
+					return false;
+			return true;
+		}
+
+	}
+
+	/**
+	 * Drops the clauses of the given generalisation that are a part of some
+	 * larger one with the same head, up to a renaming of their variables, as
+	 * they allow no hypothesis the larger one does not. Their support goes to
+	 * the larger one.
+	 *
+	 * @param supports
+	 *            the clauses of the generalisation, with their support
+	 * @return the clauses left, in the same order, with their support
+	 */
+	public static Map<Clause, Integer> compact(Map<Clause, Integer> supports) {
+		if (null == supports)
+			throw new IllegalArgumentException("Illegal 'supports' argument in Subsumption.compact(Map<Clause, Integer>): " + supports);
+		List<Clause> clauses = new ArrayList<>(supports.keySet());
+		Map<String, Integer> kinds = new HashMap<>();
+		Map<String, List<Integer>> index = new HashMap<>();
+		Signature[] signatures = new Signature[clauses.size()];
+		for (int i = 0; i < clauses.size(); i++) {
+			Clause clause = clauses.get(i);
+			signatures[i] = new Signature(clause, kinds);
+			index.computeIfAbsent(head(clause), key -> new ArrayList<>()).add(i);
+		}
+		int[] targets = new int[clauses.size()];
+		Arrays.fill(targets, -1);
+		for (List<Integer> group : index.values()) {
+			// smaller clauses first, so that support flows up along chains
+			group.sort((one, two) -> Integer.compare(clauses.get(one).getSize(), clauses.get(two).getSize()));
+			for (int i = 0; i < group.size(); i++) {
+				int part = group.get(i);
+				for (int j = i + 1; j < group.size() && targets[part] < 0; j++) {
+					int whole = group.get(j);
+					if (clauses.get(part).getSize() < clauses.get(whole).getSize() && signatures[part].fits(signatures[whole])
+							&& embeds(clauses.get(part), clauses.get(whole)))
+						targets[part] = whole;
+				}
+			}
+		}
+		int[] totals = new int[clauses.size()];
+		for (int i = 0; i < clauses.size(); i++)
+			totals[i] = supports.get(clauses.get(i));
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < clauses.size(); i++)
+			order.add(i);
+		order.sort((one, two) -> Integer.compare(clauses.get(one).getSize(), clauses.get(two).getSize()));
+		for (int i : order)
+			if (targets[i] >= 0)
+				totals[targets[i]] += totals[i];
+		Map<Clause, Integer> result = new LinkedHashMap<>();
+		for (int i = 0; i < clauses.size(); i++)
+			if (targets[i] < 0)
+				result.put(clauses.get(i), totals[i]);
+		return result;
+	}
+
+	/**
+	 * Checks whether the given part is a variant of the given whole, but for
+	 * some body literals of the whole: a renaming of its variables maps its
+	 * head to the head of the whole and its body literals to distinct ones of
+	 * the same level.
+	 */
+	public static boolean embeds(Clause part, Clause whole) {
+		if (null == part)
+			throw new IllegalArgumentException("Illegal 'part' argument in Subsumption.embeds(Clause, Clause): " + part);
+		if (null == whole)
+			throw new IllegalArgumentException("Illegal 'whole' argument in Subsumption.embeds(Clause, Clause): " + whole);
+		if (part.getSize() > whole.getSize())
+			return false;
+		Map<Variable, Term> map = new HashMap<>();
+		Map<Term, Variable> inverse = new HashMap<>();
+		if (!match(part.getHead(), whole.getHead(), map, inverse))
+			return false;
+		return match(part.getBody(), whole.getBody(), new boolean[whole.getSize()], 0, map, inverse);
+	}
+
+	private static String head(Clause clause) {
+		Atom head = clause.getHead();
+		return null == head ? "" : head.getIdentifier() + "/" + head.getArity();
+	}
+
+	private static String kind(Literal literal) {
+		Atom atom = literal.getAtom();
+		return (literal.isNegated() ? "not " : "") + atom.getIdentifier() + "/" + atom.getArity() + "@" + literal.getLevel();
+	}
+
+	/**
+	 * Matches the given atoms, extending the given renaming and its inverse:
+	 * the atoms must agree on weight and priority too.
+	 */
+	private static boolean match(Atom one, Atom two, Map<Variable, Term> map, Map<Term, Variable> inverse) {
+		if (null == one || null == two)
+			return one == two;
+		if (!one.getIdentifier().equals(two.getIdentifier()) || one.getArity() != two.getArity())
+			return false;
+		if (one.getPriority() != two.getPriority() || one.getWeight() != two.getWeight())
+			return false;
+		for (int i = 0; i < one.getArity(); i++)
+			if (!match(one.getTerm(i), two.getTerm(i), map, inverse))
+				return false;
+		return true;
+	}
+
+	private static boolean match(Literal[] one, Literal[] two, boolean[] used, int index, Map<Variable, Term> map, Map<Term, Variable> inverse) {
+		if (index == one.length)
+			return true;
+		Literal literal = one[index];
+		for (int i = 0; i < two.length; i++)
+			if (!used[i] && literal.isNegated() == two[i].isNegated() && literal.getLevel() == two[i].getLevel()) {
+				Map<Variable, Term> nextMap = new HashMap<>(map);
+				Map<Term, Variable> nextInverse = new HashMap<>(inverse);
+				if (match(literal.getAtom(), two[i].getAtom(), nextMap, nextInverse)) {
+					used[i] = true;
+					if (match(one, two, used, 1 + index, nextMap, nextInverse))
+						return true;
+					used[i] = false;
+				}
+			}
+		return false;
+	}
+
+	private static boolean match(Term one, Term two, Map<Variable, Term> map, Map<Term, Variable> inverse) {
+		if (one instanceof Atom && two instanceof Atom)
+			return match((Atom) one, (Atom) two, map, inverse);
+		if (one instanceof Variable) {
+			Variable variable = (Variable) one;
+			Term bound = map.get(variable);
+			if (null != bound)
+				return bound.equals(two);
+			if (two instanceof Variable) {
+				Placemarker type = ((Variable) two).getType();
+				if (null == variable.getType() ? null != type : !variable.getType().equals(type))
+					return false;
+			} else
+				return false;
+			if (inverse.containsKey(two))
+				return false;
+			map.put(variable, two);
+			inverse.put(two, variable);
+			return true;
+		}
+		return one.equals(two);
+	}
+
+	/**
+	 * Removes from the given clause the literals of its last level that repeat
+	 * a literal of a lower level: whatever hypothesis uses them can use the
+	 * lower one instead, with the same cost and no level left out.
+	 */
+	public static Clause reduce(Clause clause) {
+		if (null == clause)
+			throw new IllegalArgumentException("Illegal 'clause' argument in Subsumption.reduce(Clause): " + clause);
+		List<Literal> body = new ArrayList<>(Arrays.asList(clause.getBody()));
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			int top = 0;
+			for (Literal literal : body)
+				top = Math.max(top, literal.getLevel());
+			for (int i = 0; i < body.size() && !changed; i++) {
+				Literal literal = body.get(i);
+				if (literal.getLevel() == top)
+					for (Literal other : body)
+						if (other.getLevel() < top && other.isNegated() == literal.isNegated() && other.getAtom().equals(literal.getAtom())) {
+							body.remove(i);
+							changed = true;
+							break;
+						}
+			}
+		}
+		if (body.size() == clause.getSize())
+			return clause;
+		return new Clause.Builder().setHead(clause.getHead()).addLiterals(body).build();
+	}
+
+}
@@ -1,8 +1,9 @@
 /**
- * 
+ *
  */
 package xhail.core.terms;
 
+import java.util.Comparator;
 
 /**
  * @author stefano
@@ -10,6 +11,64 @@ package xhail.core.terms;
  */
 public interface Term {
 
+	/**
+	 * The structural total order on terms: numbers come first, then compound
+	 * terms, quotations and variables. No term is ever rendered to string.
+	 */
+	public static final Comparator<Term> ORDER = Term::compare;
+
+	public static int compare(Term one, Term two) {
+		if (null == one)
+			throw new IllegalArgumentException("Illegal 'one' argument in Term.compare(Term, Term): " + one);
+		if (null == two)
+			throw new IllegalArgumentException("Illegal 'two' argument in Term.compare(Term, Term): " + two);
+		if (one == two)
+			return 0;
+		int result = Integer.compare(rank(one), rank(two));
+		if (0 != result)
+			return result;
+		if (one instanceof Number)
+			return Integer.compare(((Number) one).getValue(), ((Number) two).getValue());
+		if (one instanceof Quotation)
+			return ((Quotation) one).getContent().compareTo(((Quotation) two).getContent());
+		if (one instanceof Variable) {
+			Variable first = (Variable) one;
+			Variable second = (Variable) two;
+			result = first.getIdentifier().compareTo(second.getIdentifier());
+			if (0 == result && first.getType() != second.getType()) {
+				if (null == first.getType() || null == second.getType())
+					return null == first.getType() ? -1 : 1;
+				result = first.getType().getIdentifier().compareTo(second.getType().getIdentifier());
+				if (0 == result)
+					result = first.getType().getType().compareTo(second.getType().getType());
+			}
+			return result;
+		}
+		if (one instanceof Atom) {
+			Atom first = (Atom) one;
+			Atom second = (Atom) two;
+			result = first.getIdentifier().compareTo(second.getIdentifier());
+			if (0 == result)
+				result = Integer.compare(first.getArity(), second.getArity());
+			for (int i = 0; 0 == result && i < first.getArity(); i++)
+				result = compare(first.getTerm(i), second.getTerm(i));
+			return result;
+		}
+		return 0;
+	}
+
+	public static int rank(Term term) {
+		if (term instanceof Number)
+			return 0;
+		if (term instanceof Atom)
+			return 1;
+		if (term instanceof Quotation)
+			return 2;
+		if (term instanceof Variable)
+			return 3;
+		return 4;
+	}
+
 	// public Collection<Term> matches(SchemeTerm term, Collection<Term> usables, Set<Atom> facts);
 
 }
@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package xhail.core.entities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import xhail.core.Config;
+
+/**
+ * Checks that the compact encoding of the induction program says the same as
+ * the expanded one on the toy examples: same choices, costs, levels, clause
+ * rules and count constraints.
+ *
+ * @author stefano
+ *
+ */
+public class EncodingTest {
+
+	private static class Program {
+
+		private final Map<String, String> costs = new HashMap<>();
+
+		private final Set<String> counts = new HashSet<>();
+
+		private final Map<String, String> heads = new HashMap<>();
+
+		private final Map<String, String> levels = new HashMap<>();
+
+		private final Map<String, String> literals = new HashMap<>();
+
+		private final Map<String, Set<String>> types = new HashMap<>();
+
+		private int size = 0;
+
+	}
+
+	private static final String[][] TOYS = { //
+			{ "ec.lp", "time(0) time(1) time(2) time(3) time(4) time(5) time(6) time(7) time(8) time(9) sugar(lactose) sugar(glucose)" //
+					+ " fluent(available(lactose)) fluent(available(glucose)) happens(add(lactose),0) happens(add(glucose),0)" //
+					+ " happens(use(lactose),2) happens(use(glucose),5) abduced_happens(use(lactose),2) abduced_happens(use(glucose),5)" //
+					+ " holdsAt(available(lactose),1) holdsAt(available(lactose),2) holdsAt(available(glucose),1)" //
+					+ " holdsAt(available(glucose),2) holdsAt(available(glucose),3) holdsAt(available(glucose),4) holdsAt(available(glucose),5)" },
+			{ "example1.lp", "r q p abduced_r" }, //
+			{ "example2.lp", "t(a) t(b) t(c) s(a) q(a) p(a) abduced_q(a)" }, //
+			{ "example3.lp", "t(a) t(b) t(c) t(d) q(a,b,c) q(a,b,d) r(b,d) p(a) abduced_p(a)" }, //
+			{ "example4.lp", "a p abduced_a" }, //
+			{ "penguins_simple.lp", "bird(a) bird(b) bird(c) bird(d) penguin(d) flies(a) flies(b) flies(c) abduced_flies(a) abduced_flies(b) abduced_flies(c)" },
+			{ "penguins_weighted.lp", "bird(a) bird(b) bird(c) bird(d) penguin(d) flies(a) flies(b) flies(c) abduced_flies(a) abduced_flies(b) abduced_flies(c)" } };
+
+	private static String[] encode(String name, String answer, boolean compact) {
+		Config config = new Config.Builder().setCompact(compact).setMute(true).build();
+		Problem problem = new Problem.Builder(config).parse(Paths.get("examples", "toys", name)).build();
+		return new Grounding.Builder(problem).parse(Arrays.asList(answer.split(" "))).build().asClauses();
+	}
+
+	private static String key(String atom) {
+		List<String> args = split(atom.substring(atom.indexOf('(') + 1, atom.lastIndexOf(')')), ",");
+		return args.get(0) + "," + args.get(1);
+	}
+
+	private static Program read(String[] lines) {
+		Program result = new Program();
+		Map<String, String> tries = new HashMap<>();
+		for (String line : lines) {
+			result.size += line.length() + 1;
+			if (line.startsWith("%") || line.startsWith("{") || line.startsWith(":-not clause_level(") || line.startsWith(":-clause_level(")
+					|| line.contains("use_clause_literal(V1,"))
+				continue;
+			if (line.contains("#count")) {
+				result.counts.add(line);
+				continue;
+			}
+			if (line.startsWith(":~ ")) {
+				String atom = line.substring(3, line.indexOf(". ["));
+				result.costs.put(key(atom), line.substring(line.indexOf('[') + 1, line.indexOf(',', line.indexOf('['))));
+				continue;
+			}
+			if (line.startsWith("clause(")) {
+				result.costs.putIfAbsent(line.substring(7, line.indexOf(')')) + ",0", null);
+				continue;
+			}
+			if (line.startsWith("literal(")) {
+				List<String> args = split(line.substring(8, line.lastIndexOf(')')), ",");
+				if (args.size() > 2) {
+					result.levels.put(args.get(0) + "," + args.get(1), args.get(2));
+					result.costs.put(args.get(0) + "," + args.get(1), args.get(3) + "@" + args.get(4));
+				}
+				continue;
+			}
+			int neck = line.indexOf(":-");
+			String head = line.substring(0, neck);
+			List<String> body = split(line.substring(neck + 2, line.length() - 1), ",;");
+			if (head.startsWith("clause_level(")) {
+				List<String> args = split(head.substring(13, head.length() - 1), ",");
+				result.levels.put(key(body.get(0)), args.get(1));
+			} else if (head.startsWith("try_clause_literal(")) {
+				if (!body.get(0).startsWith("not "))
+					tries.put(key(head), body.get(1));
+			} else {
+				String clause = key(body.get(0)).split(",")[0];
+				result.heads.put(clause, head);
+				Set<String> set = new LinkedHashSet<>();
+				for (String element : body.subList(1, body.size()))
+					if (element.contains(":use_clause_literal("))
+						result.literals.put(key(element.substring(element.lastIndexOf(":use_clause_literal(") + 1)),
+								element.substring(0, element.lastIndexOf(":use_clause_literal(")));
+					else if (!element.startsWith("try_clause_literal("))
+						set.add(element);
+				result.types.put(clause, set);
+			}
+		}
+		result.literals.putAll(tries);
+		return result;
+	}
+
+	private static List<String> split(String text, String separators) {
+		List<String> result = new ArrayList<>();
+		int depth = 0;
+		boolean quoted = false;
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if ('"' == c)
+				quoted = !quoted;
+			else if (!quoted && '(' == c)
+				depth += 1;
+			else if (!quoted && ')' == c)
+				depth -= 1;
+			else if (!quoted && 0 == depth && separators.indexOf(c) >= 0) {
+				result.add(text.substring(start, i));
+				start = i + 1;
+			}
+		}
+		result.add(text.substring(start));
+		return result;
+	}
+
+	@Test
+	public void testEquivalence() {
+		for (String[] toy : TOYS) {
+			Program expanded = read(encode(toy[0], toy[1], false));
+			Program compact = read(encode(toy[0], toy[1], true));
+			assertTrue("Encoding: " + toy[0] + " must have a generalisation", !expanded.heads.isEmpty());
+			assertEquals("Encoding: " + toy[0] + " must have the same clauses", expanded.heads, compact.heads);
+			assertEquals("Encoding: " + toy[0] + " must have the same type guards", expanded.types, compact.types);
+			assertEquals("Encoding: " + toy[0] + " must have the same literals", expanded.literals, compact.literals);
+			assertEquals("Encoding: " + toy[0] + " must have the same levels", expanded.levels, compact.levels);
+			assertEquals("Encoding: " + toy[0] + " must have the same costs", expanded.costs.keySet(), compact.costs.keySet());
+			for (Map.Entry<String, String> entry : compact.costs.entrySet())
+				if (null != expanded.costs.get(entry.getKey()))
+					assertEquals("Encoding: " + toy[0] + " must have the same costs", expanded.costs.get(entry.getKey()), entry.getValue());
+			assertEquals("Encoding: " + toy[0] + " must have the same count constraints", expanded.counts, compact.counts);
+			if (!expanded.literals.isEmpty())
+				assertTrue("Encoding: " + toy[0] + " must be smaller when compact", compact.size < expanded.size);
+		}
+	}
+
+}
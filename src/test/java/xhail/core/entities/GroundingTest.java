@@ -0,0 +1,159 @@
+/**
+ *
+ */
+package xhail.core.entities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import xhail.core.Config;
+import xhail.core.terms.Atom;
+import xhail.core.terms.Clause;
+import xhail.core.terms.Literal;
+import xhail.core.terms.Placemarker;
+import xhail.core.terms.Placemarker.Type;
+import xhail.core.terms.Term;
+import xhail.core.terms.Variable;
+
+/**
+ * @author stefano
+ *
+ */
+public class GroundingTest {
+
+	private static Variable v1;
+
+	private static Variable v2;
+
+	private static Variable v3;
+
+	private static Variable v4;
+
+	private static Atom atom(String identifier, Term... terms) {
+		return new Atom.Builder(identifier).addTerms(terms).build();
+	}
+
+	private static Clause clause(Atom head, Literal... body) {
+		Clause.Builder builder = new Clause.Builder().setHead(head);
+		for (Literal literal : body)
+			builder.addLiteral(literal);
+		return builder.build();
+	}
+
+	private static Grounding ground(Problem problem, Grounding base, String answer) {
+		Grounding.Builder builder = null == base ? new Grounding.Builder(problem) : new Grounding.Builder(problem, base);
+		return builder.parse(Arrays.asList(answer.split(" "))).build();
+	}
+
+	private static Literal literal(int level, Atom atom) {
+		return new Literal.Builder(atom).setLevel(level).build();
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Placemarker bird = new Placemarker.Builder("bird").setType(Type.INPUT).build();
+		v1 = new Variable.Builder("V1").setType(bird).build();
+		v2 = new Variable.Builder("V2").setType(bird).build();
+		v3 = new Variable.Builder("V3").setType(bird).build();
+		v4 = new Variable.Builder("V4").setType(bird).build();
+	}
+
+	@Test
+	public void testKernel() {
+		Config config = new Config.Builder().setMute(true).build();
+		Problem problem = new Problem.Builder(config).parse(Paths.get("examples", "toys", "penguins_simple.lp")).build();
+		String answer = "bird(a) bird(b) bird(c) bird(d) penguin(d) abduced_flies(a) abduced_flies(d)";
+		Clause[] expected = { clause(atom("flies", atom("a")), new Literal.Builder(atom("penguin", atom("a"))).setNegated(true).setLevel(1).build()),
+				clause(atom("flies", atom("d")), literal(1, atom("penguin", atom("d")))) };
+		assertArrayEquals("Grounding: kernels probed through the fact index must match", expected, ground(problem, null, answer).getKernel());
+		Grounding base = ground(problem, null, "bird(a) bird(b) bird(c) bird(d)");
+		assertArrayEquals("Grounding: kernels probed through an overlay must match", expected, ground(problem, base, answer).getKernel());
+	}
+
+	@Test
+	public void testFingerprint() {
+		Config config = new Config.Builder().setMute(true).build();
+		Problem problem = new Problem.Builder(config).parse(Paths.get("examples", "toys", "penguins_simple.lp")).build();
+		String answer = "bird(a) bird(b) bird(c) bird(d) penguin(d) flies(a) abduced_flies(a)";
+		long fingerprint = ground(problem, null, answer).getFingerprint();
+		assertEquals("Grounding: equal answers must have equal fingerprints", fingerprint,
+				ground(problem, null, "abduced_flies(a) flies(a) penguin(d) bird(d) bird(c) bird(b) bird(a)").getFingerprint());
+		assertEquals("Grounding: facts saturation cannot look at must be ignored", fingerprint, ground(problem, null, answer + " wings(a)").getFingerprint());
+		assertNotEquals("Grounding: answers with other deltas must have other fingerprints", fingerprint,
+				ground(problem, null, "bird(a) bird(b) bird(c) bird(d) penguin(d) flies(a) abduced_flies(b)").getFingerprint());
+		assertNotEquals("Grounding: answers with other facts must have other fingerprints", fingerprint,
+				ground(problem, null, answer + " penguin(c)").getFingerprint());
+		Grounding base = ground(problem, null, "bird(a) bird(b) bird(c) bird(d) penguin(d)");
+		assertEquals("Grounding: fingerprints must not depend on the base", fingerprint, ground(problem, base, answer).getFingerprint());
+		assertNotEquals("Grounding: fingerprints over a base must tell answers apart", fingerprint,
+				ground(problem, base, answer + " penguin(c)").getFingerprint());
+	}
+
+	@Test
+	public void testAsBadSolutionOrder() {
+		Config config = new Config.Builder().setMute(true).build();
+		Problem problem = new Problem.Builder(config).parse(Paths.get("examples", "toys", "penguins_simple.lp")).build();
+		assertEquals("Grounding: bad solutions must list the delta and its size", "bad_solution:-flies(a),number_abduced(1).",
+				ground(problem, null, "bird(a) bird(b) bird(c) bird(d) penguin(d) flies(a) abduced_flies(a)").asBadSolution());
+		String expected = "bad_solution:-flies(a),flies(b),number_abduced(2).";
+		assertEquals("Grounding: bad solutions must list the delta and its size", expected,
+				ground(problem, null, "bird(a) bird(b) bird(c) bird(d) penguin(d) flies(a) flies(b) abduced_flies(b) abduced_flies(a)").asBadSolution());
+		assertEquals("Grounding: bad solutions must not depend on the order of the atoms of the answer", expected,
+				ground(problem, null, "abduced_flies(a) abduced_flies(b) flies(b) flies(a) penguin(d) bird(d) bird(c) bird(b) bird(a)").asBadSolution());
+	}
+
+	@Test
+	public void testFit() {
+		Map<Clause, Integer> supports = new LinkedHashMap<>();
+		supports.put(clause(atom("flies", v1), literal(1, atom("bird", v1))), 3);
+		supports.put(clause(atom("flies", v1), literal(1, atom("bird", v1)), literal(1, atom("light", v1))), 2);
+		supports.put(clause(atom("flies", v1), literal(1, atom("light", v1))), 1);
+		assertEquals("Grounding: the best supported clauses must fit the budget of clauses", 1L, Grounding.fit(supports, 2L, false));
+		assertEquals("Grounding: the best supported clauses must fit the budget of literals", 2L, Grounding.fit(supports, 4L, true));
+		assertEquals("Grounding: the best supported clauses must be kept if none fits", 2L, Grounding.fit(supports, 1L, true));
+	}
+
+	@Test
+	public void testGeneralisation() {
+		String answer = "bird(a) bird(b) bird(c) bird(d) penguin(d) flies(a) flies(b) flies(c) flies(d) abduced_flies(d) abduced_flies(a) abduced_flies(b) abduced_flies(c)";
+		// the sequential generalisations, without and with pruning
+		String[] expected = new String[] { "[flies(V1):-not penguin(V1)., flies(V1):-penguin(V1).]", "[flies(V1):-not penguin(V1).]" };
+		for (String jobs : new String[] { "1", "4" })
+			for (int prune = 0; prune < expected.length; prune++) {
+				Config config = new Config.Builder().setMute(true).setJobs(jobs).setPrune(Integer.toString(prune)).build();
+				Problem problem = new Problem.Builder(config).parse(Paths.get("examples", "toys", "penguins_simple.lp")).build();
+				assertEquals("Grounding: generalisations on " + jobs + " threads must be the sequential ones, in the same order", expected[prune],
+						Arrays.toString(ground(problem, null, answer).getGeneralisation()));
+			}
+	}
+
+	@Test
+	public void testThin() {
+		// near(V1,V2) and near(V3,V4) are counted together
+		Map<Clause, Integer> gmap = new LinkedHashMap<>();
+		gmap.put(clause(atom("flies", v1), literal(1, atom("near", v1, v2)), literal(2, atom("penguin", v2))), 2);
+		gmap.put(clause(atom("flies", v3), literal(1, atom("near", v3, v4)), literal(1, atom("bird", v3))), 1);
+		Map<Clause, Integer> result = Grounding.thin(gmap, 4L, true);
+		assertEquals("Grounding: literals equal but for their variables must share their support", 1, result.size());
+		assertEquals("Grounding: clauses made equal must be merged", Integer.valueOf(3),
+				result.get(clause(atom("flies", v1), literal(1, atom("near", v1, v2)))));
+
+		// near(V1,V2) is the only literal of a level below a kept one
+		gmap = new LinkedHashMap<>();
+		gmap.put(clause(atom("flies", v1), literal(1, atom("near", v1, v2)), literal(2, atom("penguin", v2))), 1);
+		gmap.put(clause(atom("flies", v1), literal(1, atom("bird", v1)), literal(2, atom("penguin", v1))), 3);
+		result = Grounding.thin(gmap, 6L, true);
+		assertEquals("Grounding: levels below kept literals must not be emptied", Integer.valueOf(1),
+				result.get(clause(atom("flies", v1), literal(1, atom("near", v1, v2)), literal(2, atom("penguin", v2)))));
+	}
+
+}
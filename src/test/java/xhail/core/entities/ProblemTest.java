@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package xhail.core.entities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import xhail.core.Config;
+import xhail.core.Emitter;
+import xhail.core.entities.Problem.Segment;
+
+/**
+ * @author stefano
+ *
+ */
+public class ProblemTest {
+
+	private static String emit(Problem problem, Segment segment, Object inputs, String rendering, AtomicInteger renders) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try (Emitter emitter = new Emitter(stream)) {
+			problem.emitSegment(segment, inputs, () -> {
+				renders.incrementAndGet();
+				return rendering.getBytes(StandardCharsets.UTF_8);
+			}, emitter);
+		}
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testEmitSegment() throws IOException {
+		Config config = new Config.Builder().setMute(true).build();
+		Problem problem = new Problem.Builder(config).parse(Paths.get("examples", "toys", "penguins_simple.lp")).build();
+		AtomicInteger renders = new AtomicInteger();
+		assertEquals("Problem: segments must be rendered on first use", "one", emit(problem, Segment.EXAMPLES, Arrays.asList("a"), "one", renders));
+		assertEquals("Problem: segments must be copied while their inputs are the same", "one",
+				emit(problem, Segment.EXAMPLES, Arrays.asList("a"), "two", renders));
+		assertEquals("Problem: segments must be rendered once while their inputs are the same", 1, renders.get());
+		assertEquals("Problem: segments must be rendered again when their inputs change", "two",
+				emit(problem, Segment.EXAMPLES, Arrays.asList("b"), "two", renders));
+		assertEquals("Problem: changed segments must be copied afterwards", "two", emit(problem, Segment.EXAMPLES, Arrays.asList("b"), "three", renders));
+		assertEquals("Problem: other segments must be rendered on their own", "three",
+				emit(problem, Segment.INDUCTION, Arrays.asList("b"), "three", renders));
+		assertEquals("Problem: each change must be rendered once", 3, renders.get());
+	}
+
+}
@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package xhail.core.entities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import xhail.core.entities.Grounding.Limit;
+import xhail.core.facts.Dictionary;
+import xhail.core.facts.FactStore;
+import xhail.core.parser.Parser;
+import xhail.core.statements.ModeH;
+import xhail.core.terms.Atom;
+import xhail.core.terms.Number;
+import xhail.core.terms.Placemarker;
+import xhail.core.terms.SchemeTerm;
+
+/**
+ * @author stefano
+ *
+ */
+public class TraceTest {
+
+	private static FactStore store(String... tokens) {
+		FactStore result = new FactStore(new Dictionary());
+		for (String token : tokens)
+			result.add(Parser.parseToken(token));
+		return result;
+	}
+
+	@Test
+	public void testReplays() {
+		Placemarker sugar = new Placemarker.Builder("sugar").setType(Placemarker.Type.CONSTANT).build();
+		Map<SchemeTerm, Set<Atom>> table = new HashMap<>();
+		table.put(sugar, new HashSet<>(store("sugar(lactose)", "sugar(glucose)")));
+
+		Trace trace = new Trace(store("time(1)", "time(2)"), table);
+		assertTrue("Trace: answers must be passed through", trace.contains("time", new Number.Builder(1).build()));
+		assertFalse("Trace: answers must be passed through", trace.contains("time", new Number.Builder(3).build()));
+		trace.getTable().get(sugar);
+		assertTrue("Trace: traces of queries only must be kept", trace.close(null, Collections.<Limit> emptySet()));
+		assertNull("Trace: missing clauses must be kept", trace.getClause());
+
+		assertTrue("Trace: groundings answering the same must replay", trace.replays(store("time(1)", "time(4)"), table));
+		assertFalse("Trace: groundings answering differently must not replay", trace.replays(store("time(1)", "time(3)"), table));
+		Map<SchemeTerm, Set<Atom>> other = new HashMap<>();
+		other.put(sugar, new HashSet<>(store("sugar(lactose)")));
+		assertFalse("Trace: groundings with other entries must not replay", trace.replays(store("time(1)"), other));
+		other.put(sugar, new HashSet<>(store("sugar(lactose)", "sugar(fructose)")));
+		assertFalse("Trace: groundings with entries of the same size must not replay", trace.replays(store("time(1)"), other));
+
+		Trace opaque = new Trace(store("time(1)"), table);
+		opaque.iterator();
+		assertFalse("Trace: traces of scans must not be kept", opaque.close(null, Collections.<Limit> emptySet()));
+	}
+
+	@Test
+	public void testTraces() {
+		ModeH mode = Parser.parseModeH("flies(+bird)");
+		Map.Entry<Atom, ModeH> a = new SimpleEntry<>(Parser.parseToken("flies(a)"), mode);
+		Map.Entry<Atom, ModeH> b = new SimpleEntry<>(Parser.parseToken("flies(b)"), mode);
+		Map.Entry<Atom, ModeH> c = new SimpleEntry<>(Parser.parseToken("flies(c)"), mode);
+		Traces traces = new Traces(2L);
+		Trace[] added = new Trace[5];
+		for (int i = 0; i < added.length; i++) {
+			added[i] = new Trace(store("time(1)"), new HashMap<>());
+			added[i].close(null, Collections.<Limit> emptySet());
+		}
+		traces.add(a, added[0]);
+		traces.add(b, added[1]);
+		traces.get(a);
+		traces.add(c, added[2]);
+		assertEquals("Traces: the budget must be kept", 2L, traces.getWeight());
+		assertArrayEquals("Traces: pairs used recently must be kept", new Trace[] { added[0] }, traces.get(a));
+		assertNull("Traces: pairs used least recently must be evicted", traces.get(b));
+
+		traces = new Traces(Long.MAX_VALUE);
+		for (Trace trace : added)
+			traces.add(a, trace);
+		assertArrayEquals("Traces: only the most recent traces of a pair must be kept", new Trace[] { added[4], added[3], added[2], added[1] }, traces.get(a));
+	}
+
+}
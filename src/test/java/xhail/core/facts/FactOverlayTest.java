@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import xhail.core.terms.Atom;
+import xhail.core.terms.Number;
+
+/**
+ * @author stefano
+ *
+ */
+public class FactOverlayTest {
+
+	private static final String TIME = "time";
+
+	@Rule
+	public TemporaryFolder scratch = new TemporaryFolder();
+
+	private static Atom time(int time) {
+		return new Atom.Builder(TIME).addTerm(new Number.Builder(time).build()).build();
+	}
+
+	@Test
+	public void testLayers() {
+		FactStore base = new FactStore(new Dictionary());
+		for (int t = 0; t < 10; t++)
+			base.add(time(t));
+		FactOverlay overlay = new FactOverlay(base);
+		assertFalse("FactOverlay: atoms of the base must not be added again", overlay.add(time(3)));
+		assertTrue("FactOverlay: new atoms must be added", overlay.add(time(10)));
+		assertTrue("FactOverlay: atoms of the base must be removable", overlay.remove(time(4)));
+		assertEquals("FactOverlay: size must account for both layers", 10, overlay.size());
+		assertFalse("FactOverlay: removed atoms must be hidden", overlay.contains(TIME, new Number.Builder(4).build()));
+		assertTrue("FactOverlay: added atoms must be found", overlay.contains(TIME, new Number.Builder(10).build()));
+		assertEquals("FactOverlay: selection must merge both layers", 10, overlay.select(TIME, 1).size());
+		assertEquals("FactOverlay: base must not be modified", 10, base.size());
+		assertTrue("FactOverlay: removed atoms of the base must be restorable", overlay.add(time(4)));
+		assertEquals("FactOverlay: only differences must be stored", 1, overlay.getAdded().size() + overlay.getRemoved().size());
+	}
+
+	@Test
+	public void testMapped() {
+		Dictionary dictionary = new Dictionary(scratch.getRoot().toPath());
+		FactStore base = new FactStore(dictionary);
+		for (int t = 0; t < 10000; t++)
+			base.add(time(t));
+		int pages = dictionary.getScratch().getPages();
+		FactOverlay overlay = new FactOverlay(base);
+		for (int t = 5000; t < 15000; t++)
+			overlay.add(time(t));
+		for (int t = 0; t < 5000; t += 2)
+			overlay.remove(time(t));
+		assertTrue("FactOverlay: differences must be stored in the scratch file of the base", dictionary.getScratch().getPages() > pages);
+		assertEquals("FactOverlay: mapped size must account for both layers", 12500, overlay.size());
+		assertTrue("FactOverlay: mapped added atoms must be found", overlay.contains(TIME, new Number.Builder(14999).build()));
+		assertFalse("FactOverlay: mapped removed atoms must be hidden", overlay.contains(TIME, new Number.Builder(4998).build()));
+		assertEquals("FactOverlay: mapped base must not be modified", 10000, base.size());
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(42);
+		FactStore base = new FactStore(new Dictionary());
+		Set<Atom> expected = new HashSet<>();
+		for (int i = 0; i < 500; i++) {
+			Atom atom = time(random.nextInt(1000));
+			base.add(atom);
+			expected.add(atom);
+		}
+		FactOverlay overlay = new FactOverlay(base);
+		for (int i = 0; i < 2000; i++) {
+			Atom atom = time(random.nextInt(1000));
+			if (random.nextBoolean())
+				assertEquals("FactOverlay: add must behave like a set", expected.add(atom), overlay.add(atom));
+			else
+				assertEquals("FactOverlay: remove must behave like a set", expected.remove(atom), overlay.remove(atom));
+		}
+		assertEquals("FactOverlay: size must match", expected.size(), overlay.size());
+		assertEquals("FactOverlay: content must match", expected, overlay);
+		assertEquals("FactOverlay: hash code must match", expected.hashCode(), overlay.hashCode());
+	}
+
+}
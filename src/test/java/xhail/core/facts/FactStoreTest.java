@@ -0,0 +1,185 @@
+/**
+ *
+ */
+package xhail.core.facts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import xhail.core.terms.Atom;
+import xhail.core.terms.Number;
+import xhail.core.terms.Quotation;
+import xhail.core.terms.Term;
+
+/**
+ * @author stefano
+ *
+ */
+public class FactStoreTest {
+
+	private static final String AVAILABLE = "available";
+
+	private static final String HOLDS_AT = "holdsAt";
+
+	private static final String TIME = "time";
+
+	@Rule
+	public TemporaryFolder scratch = new TemporaryFolder();
+
+	private FactStore store;
+
+	private static Atom holdsAt(String sugar, int time) {
+		Atom fluent = new Atom.Builder(AVAILABLE).addTerm(new Atom.Builder(sugar).build()).build();
+		return new Atom.Builder(HOLDS_AT).addTerm(fluent).addTerm(new Number.Builder(time).build()).build();
+	}
+
+	private static Atom time(int time) {
+		return new Atom.Builder(TIME).addTerm(new Number.Builder(time).build()).build();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		store = new FactStore(new Dictionary());
+	}
+
+	@Test
+	public void testConcurrentSelect() throws Exception {
+		for (int t = 0; t < 1000; t++) {
+			store.add(holdsAt("lactose", t));
+			store.add(holdsAt("glucose", t));
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				int time = i;
+				results.add(pool.submit(() -> store.select(HOLDS_AT, 2, 1, new Number.Builder(time).build()).size()));
+			}
+			for (Future<Integer> result : results)
+				assertEquals("FactStore: concurrent selections must see complete indexes", 2, (int) result.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testContains() {
+		assertTrue("FactStore: new atoms must be added", store.add(holdsAt("lactose", 1)));
+		assertFalse("FactStore: duplicates must not be added", store.add(holdsAt("lactose", 1)));
+		assertTrue("FactStore: added atoms must be found", store.contains(holdsAt("lactose", 1)));
+		assertFalse("FactStore: missing atoms must not be found", store.contains(holdsAt("lactose", 2)));
+		assertFalse("FactStore: atoms with weights must not be found", store.contains(new Atom.Builder(holdsAt("lactose", 1)).setWeight(2).build()));
+		store.add(time(1));
+		assertTrue("FactStore: unary atoms must be found without building them", store.contains(TIME, new Number.Builder(1).build()));
+		assertFalse("FactStore: missing unary atoms must not be found", store.contains(TIME, new Number.Builder(2).build()));
+	}
+
+	@Test
+	public void testMapped() {
+		Dictionary dictionary = new Dictionary(scratch.getRoot().toPath());
+		FactStore mapped = new FactStore(dictionary);
+		Set<Atom> expected = new HashSet<>();
+		for (int t = 0; t < 400000; t++) {
+			expected.add(time(t));
+			mapped.add(time(t));
+		}
+		for (int t = 0; t < 400000; t += 3) {
+			expected.remove(time(t));
+			mapped.remove(time(t));
+		}
+		assertEquals("FactStore: mapped size must match", expected.size(), mapped.size());
+		assertEquals("FactStore: mapped content must match", expected, mapped);
+		assertTrue("FactStore: mapped atoms beyond the first chunk must be found", mapped.contains(TIME, new Number.Builder(399998).build()));
+		assertFalse("FactStore: mapped removed atoms must not be found", mapped.contains(TIME, new Number.Builder(399999).build()));
+		assertEquals("FactStore: mapped selection must skip removed atoms", expected.size(), mapped.select(TIME, 1).size());
+		assertEquals("FactStore: scratch files must be unlinked", 0, scratch.getRoot().list().length);
+		int pages = dictionary.getScratch().getPages();
+		mapped.clear();
+		assertEquals("FactStore: mapped store must be emptied", 0, mapped.size());
+		assertTrue("FactStore: mapped store must be usable after clearing", mapped.add(time(1)));
+		for (int t = 0; t < 400000; t++)
+			mapped.add(time(t));
+		assertEquals("FactStore: mapped store must be refilled", 400000, mapped.size());
+		assertEquals("FactStore: scratch pages must be reused after clearing", pages, dictionary.getScratch().getPages());
+		FactStore other = new FactStore(dictionary);
+		other.add(holdsAt("lactose", 1));
+		assertEquals("FactStore: stores must share the scratch file of their dictionary", 0, scratch.getRoot().list().length);
+		assertTrue("FactStore: stores sharing a scratch file must not interfere", other.contains(holdsAt("lactose", 1)));
+		assertFalse("FactStore: stores sharing a scratch file must not interfere", other.contains(time(1)));
+	}
+
+	@Test
+	public void testMappedTerms() {
+		Dictionary dictionary = new Dictionary(scratch.getRoot().toPath());
+		Term[] terms = { new Number.Builder(-3).build(), new Quotation.Builder("\"a b c\"").build(), holdsAt("lactose", 7),
+				new Atom.Builder("f").addTerm(new Quotation.Builder("\"q\"").build()).addTerm(new Number.Builder(Integer.MAX_VALUE).build()).build(),
+				new Atom.Builder(holdsAt("glucose", 2)).setWeight(2).build() };
+		int[] ids = new int[terms.length];
+		for (int i = 0; i < terms.length; i++)
+			ids[i] = dictionary.encode(terms[i]);
+		for (int i = 0; i < terms.length; i++) {
+			assertEquals("Dictionary: mapped terms must be encoded once", ids[i], dictionary.encode(terms[i]));
+			assertEquals("Dictionary: mapped terms must be found", ids[i], dictionary.lookup(terms[i]));
+			assertEquals("Dictionary: mapped terms must be decoded", terms[i], dictionary.getTerm(ids[i]));
+		}
+		assertEquals("Dictionary: missing mapped terms must not be found", -1, dictionary.lookup(holdsAt("lactose", 8)));
+		for (int t = 0; t < 10000; t++)
+			dictionary.encode(new Number.Builder(t).build());
+		for (int i = 0; i < terms.length; i++)
+			assertEquals("Dictionary: mapped terms must survive growing", terms[i], dictionary.getTerm(dictionary.lookup(terms[i])));
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(42);
+		Set<Atom> expected = new HashSet<>();
+		for (int i = 0; i < 5000; i++) {
+			Atom atom = random.nextBoolean() ? time(random.nextInt(200)) : holdsAt(random.nextBoolean() ? "lactose" : "glucose", random.nextInt(200));
+			if (random.nextInt(4) > 0)
+				assertEquals("FactStore: add must behave like a set", expected.add(atom), store.add(atom));
+			else
+				assertEquals("FactStore: remove must behave like a set", expected.remove(atom), store.remove(atom));
+		}
+		assertEquals("FactStore: size must match", expected.size(), store.size());
+		assertEquals("FactStore: content must match", expected, store);
+		assertEquals("FactStore: hash code must match", expected.hashCode(), store.hashCode());
+		int count = 0;
+		for (Atom atom : expected)
+			if (TIME.equals(atom.getIdentifier()))
+				count += 1;
+		assertEquals("FactStore: predicate selection must match", count, store.select(TIME, 1).size());
+	}
+
+	@Test
+	public void testSelect() {
+		for (int t = 0; t < 10; t++) {
+			store.add(time(t));
+			store.add(holdsAt("lactose", t));
+			store.add(holdsAt("glucose", t));
+		}
+		assertEquals("FactStore: selection by predicate", 10, store.select(TIME, 1).size());
+		assertEquals("FactStore: selection by predicate", 20, store.select(HOLDS_AT, 2).size());
+		assertEquals("FactStore: selection by argument", 2, store.select(HOLDS_AT, 2, 1, new Number.Builder(3).build()).size());
+		store.remove(holdsAt("glucose", 3));
+		assertEquals("FactStore: selection must skip removed atoms", 1, store.select(HOLDS_AT, 2, 1, new Number.Builder(3).build()).size());
+		assertTrue("FactStore: selection must contain matching atoms",
+				store.select(HOLDS_AT, 2, 1, new Number.Builder(3).build()).contains(holdsAt("lactose", 3)));
+		assertEquals("FactStore: unknown predicates select nothing", 0, store.select("happens", 2).size());
+	}
+
+}
@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package xhail.core.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import xhail.core.entities.Values;
+
+/**
+ * @author stefano
+ *
+ */
+public class AcquirerTest {
+
+	private static Acquirer from(String output) {
+		return Acquirer.from(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testEnumerate() {
+		String output = "abduced_flies(a) abduced_flies(b)\nOptimization: 2\nabduced_flies(a)\nOptimization: 1\nabduced_flies(b)\nOptimization: 1\nSATISFIABLE\n";
+		SortedMap<Values, Collection<Collection<String>>> levels = from(output).enumerate();
+		assertArrayEquals("Acquirer: levels must be sorted by values", new Object[] { new Values("1"), new Values("2") }, levels.keySet().toArray());
+		assertEquals("Acquirer: answers of the same values must be kept together", 2, levels.get(new Values("1")).size());
+		assertTrue("Acquirer: answers of worse values must be kept too",
+				levels.get(new Values("2")).contains(new HashSet<>(Arrays.asList("abduced_flies(a)", "abduced_flies(b)"))));
+	}
+
+	@Test
+	public void testBound() {
+		String output = "abduced_flies(a) abduced_flies(b)\nOptimization: 0 2\nabduced_flies(a)\nOptimization: 0 1\nOPTIMUM FOUND\n";
+		Values optimum = from(output).parse().getKey();
+		assertEquals("Acquirer: enumerations must be bounded above the optimum on the least significant value", new Values("0 3"), optimum.raise(2));
+		assertEquals("Acquirer: a bound without slack must be the optimum", optimum, optimum.raise(0));
+	}
+
+	@Test
+	public void testParse() {
+		String output = "abduced_flies(a) abduced_flies(b)\nOptimization: 2\nabduced_flies(a)\nOptimization: 1\nOPTIMUM FOUND\n";
+		Map.Entry<Values, Collection<Collection<String>>> optimals = from(output).parse();
+		assertEquals("Acquirer: the best values must be found", new Values("1"), optimals.getKey());
+		assertEquals("Acquirer: only the best answers must be kept", 1, optimals.getValue().size());
+	}
+
+}
@@ -0,0 +1,67 @@
+/**
+ *
+ */
+package xhail.core.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * @author stefano
+ *
+ */
+public class DependenciesTest {
+
+	@Test
+	public void testOf() {
+		Dependencies rule = Dependencies.of("flies(X) :- bird(X), not penguin(X), X != \"a :- b\".");
+		assertArrayEquals("Dependencies: heads must be found", new String[] { "flies" }, rule.getHeads());
+		assertArrayEquals("Dependencies: arguments must not be predicates", new String[] { "bird" }, rule.getPositives());
+		assertArrayEquals("Dependencies: negations must be told apart", new String[] { "penguin" }, rule.getNegatives());
+		assertFalse("Dependencies: rules are not roots", rule.isRoot());
+
+		Dependencies count = Dependencies.of("n(N) :- N = #count { X : p(X) }.");
+		assertArrayEquals("Dependencies: aggregates must be looked into", new String[] { "p" }, count.getPositives());
+
+		assertFalse("Dependencies: facts are not roots", Dependencies.of("time(0..9).").isRoot());
+		assertFalse("Dependencies: free choices are not roots", Dependencies.of("{ p(X) : q(X) } :- r(X).").isRoot());
+		assertTrue("Dependencies: constraints are roots", Dependencies.of(":- happens(use(G),T), not holdsAt(available(G), T).").isRoot());
+		assertTrue("Dependencies: weak constraints are roots", Dependencies.of(":~ p(X). [1@1,X]").isRoot());
+		assertTrue("Dependencies: lower bounds are roots", Dependencies.of("1 { p(X) : q(X) } :- r.").isRoot());
+		assertTrue("Dependencies: upper bounds are roots", Dependencies.of("{ p(X) : q(X) } 1 :- r.").isRoot());
+		assertTrue("Dependencies: directives are roots", Dependencies.of("#const n=3.").isRoot());
+
+		assertFalse("Dependencies: pools are not open", Dependencies.of("bird(a;b).").isOpen());
+		assertTrue("Dependencies: choices are open", Dependencies.of("{ p(X) : q(X) } :- r(X).").isOpen());
+		assertTrue("Dependencies: disjunctions are open", Dependencies.of("p(X) ; q(X) :- r(X).").isOpen());
+		assertTrue("Dependencies: conditions in heads are open", Dependencies.of("p(X) : q(X) :- r.").isOpen());
+	}
+
+	@Test
+	public void testRelevant() {
+		Dependencies[] statements = { Dependencies.of("a :- b."), Dependencies.of("b :- not c."), Dependencies.of("d :- e."), Dependencies.of("f :- not f, b."),
+				Dependencies.of(":- g.") };
+		assertEquals("Dependencies: the slice must follow the rules and keep odd loops and constraints", new HashSet<>(Arrays.asList("a", "b", "c", "f", "g")),
+				Dependencies.relevant(Arrays.asList(statements), Collections.singleton("a")));
+		assertTrue("Dependencies: defining rules must be kept", statements[0].isRelevant(Collections.singleton("a")));
+		assertFalse("Dependencies: other rules must be left out", statements[2].isRelevant(Collections.singleton("a")));
+	}
+
+	@Test
+	public void testUnsettled() {
+		Dependencies[] statements = { Dependencies.of("bird(a;b)."), Dependencies.of("abnormal(X) :- penguin(X)."), Dependencies.of("flies(X) :- bird(X), not abnormal(X)."),
+				Dependencies.of("rain :- not dry."), Dependencies.of("dry :- not rain."), Dependencies.of("wet :- rain."), Dependencies.of("{ sunny }.") };
+		assertEquals("Dependencies: heads, loops through negation, choices and what depends on them must be unsettled",
+				new HashSet<>(Arrays.asList("penguin", "abnormal", "flies", "rain", "dry", "wet", "sunny")),
+				Dependencies.unsettled(Arrays.asList(statements), Collections.singleton("penguin")));
+	}
+
+}
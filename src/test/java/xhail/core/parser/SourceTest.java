@@ -0,0 +1,54 @@
+/**
+ *
+ */
+package xhail.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import xhail.core.Emitter;
+
+/**
+ * @author stefano
+ *
+ */
+public class SourceTest {
+
+	@Rule
+	public TemporaryFolder scratch = new TemporaryFolder();
+
+	@Test
+	public void testScan() throws Exception {
+		Path path = scratch.newFile("source.lp").toPath();
+		Files.write(path, ("% the time\ntime(0..9).\n#modeh flies(+bird). %* modes\nmore *%\n" //
+				+ "label(\"a. #b\").\n#example flies(a).#display flies/1.\nbird(X) :- penguin(X).").getBytes(StandardCharsets.UTF_8));
+		List<String> directives = new ArrayList<>();
+		Source source = Source.scan(path, directives::add);
+		assertEquals("Source: directives must be split as statements", Arrays.asList("#modeh flies(+bird).", "#example flies(a).", "#display flies/1."),
+				directives);
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try (Emitter emitter = new Emitter(stream)) {
+			source.emit(emitter);
+		}
+		String background = new String(stream.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue("Source: ranges must be kept", background.contains("time(0..9)."));
+		assertTrue("Source: strings must not end statements", background.contains("label(\"a. #b\")."));
+		assertTrue("Source: the last statement must be kept", background.contains("bird(X) :- penguin(X)."));
+		assertTrue("Source: directives must be left out", !background.contains("#modeh") && !background.contains("#example") && !background.contains("#display"));
+		assertEquals("Source: length must count the background bytes only", background.length() - 3 * System.lineSeparator().length(), source.length());
+	}
+
+}
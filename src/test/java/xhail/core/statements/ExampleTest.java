@@ -0,0 +1,60 @@
+/**
+ *
+ */
+package xhail.core.statements;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import xhail.core.parser.Parser;
+
+/**
+ * @author stefano
+ *
+ */
+public class ExampleTest {
+
+	private static Example example1;
+
+	private static Example example2;
+
+	private static Example example3;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		example1 = new Example.Builder(Parser.parseToken("flies(a)")).setWeight(5).setPriority(2).build();
+		example2 = new Example.Builder(Parser.parseToken("flies(d)")).setNegated(true).build();
+		example3 = new Example.Builder(Parser.parseToken("holdsAt(available(lactose),3)")).setNegated(true).setWeight(2).build();
+	}
+
+	@Test
+	public void testAsFact() {
+		assertEquals("Example1: defeasible examples must keep weight and priority", "example(flies(a),1,5,2).", example1.asFact());
+		assertEquals("Example2: strict examples must keep the sign only", "example(flies(d),-1).", example2.asFact());
+		assertEquals("Example3: nested atoms must be kept whole", "example(holdsAt(available(lactose),3),-1,2,1).", example3.asFact());
+	}
+
+	@Test
+	public void testAsRules() {
+		assertArrayEquals("Examples: one rule per kind of constraint and one per predicate", new String[] { //
+				"example_atom(V1):-example(V1,V2,V3,V4).", //
+				":~ not example_holds(V1),example(V1,1,V2,V3). [V2@V3,V1]", //
+				":~ example_holds(V1),example(V1,-1,V2,V3). [V2@V3,V1]", //
+				"example_atom(V1):-example(V1,V2).", //
+				":-not example_holds(V1),example(V1,1).", //
+				":-example_holds(V1),example(V1,-1).", //
+				"example_holds(flies(V1)):-example_atom(flies(V1)),flies(V1).", //
+				"example_holds(holdsAt(V1,V2)):-example_atom(holdsAt(V1,V2)),holdsAt(V1,V2)." //
+		}, Example.asRules(new Example[] { example1, example2, example3 }));
+		assertArrayEquals("Examples: strict examples only need their constraints", new String[] { //
+				"example_atom(V1):-example(V1,V2).", //
+				":-not example_holds(V1),example(V1,1).", //
+				":-example_holds(V1),example(V1,-1).", //
+				"example_holds(flies(V1)):-example_atom(flies(V1)),flies(V1)." //
+		}, Example.asRules(new Example[] { example2 }));
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import xhail.core.terms.Placemarker.Type;
+
+/**
+ * @author stefano
+ *
+ */
+public class ClauseTest {
+
+	private static final String BIRD = "bird";
+
+	private static final String FLIES = "flies";
+
+	private static final String NEAR = "near";
+
+	private static final String PENGUIN = "penguin";
+
+	private static Placemarker bird;
+
+	private static Literal literal1;
+
+	private static Literal literal2;
+
+	private static Literal literal3;
+
+	private static Variable v1;
+
+	private static Variable v2;
+
+	private static Variable v3;
+
+	private static Clause chain(Variable x, Variable y, Variable z, Variable w) {
+		return new Clause.Builder().setHead(new Atom.Builder(FLIES).addTerm(x).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder(NEAR).addTerm(x).addTerm(y).build()).setLevel(1).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder(NEAR).addTerm(z).addTerm(w).build()).setLevel(1).build()).build();
+	}
+
+	private static Clause tied(Variable x, Variable first, Variable second, Variable q, Variable r) {
+		return new Clause.Builder().setHead(new Atom.Builder("h").addTerm(x).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder("p").addTerm(x).addTerm(first).build()).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder("p").addTerm(x).addTerm(second).build()).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder("q").addTerm(q).build()).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder("r").addTerm(r).build()).build()).build();
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		bird = new Placemarker.Builder(BIRD).setType(Type.INPUT).build();
+		v1 = new Variable.Builder("V1").setType(bird).build();
+		v2 = new Variable.Builder("V2").setType(bird).build();
+		v3 = new Variable.Builder("V3").setType(bird).build();
+		// penguin(V1)
+		literal1 = new Literal.Builder(new Atom.Builder(PENGUIN).addTerm(v1).build()).setLevel(1).build();
+		// not penguin(V2)
+		literal2 = new Literal.Builder(new Atom.Builder(PENGUIN).addTerm(v2).build()).setNegated(true).setLevel(1).build();
+		// bird(V1)
+		literal3 = new Literal.Builder(new Atom.Builder(BIRD).addTerm(v1).build()).build();
+	}
+
+	@Test
+	public void testCanonicalForm() {
+		// flies(V1):-near(V1,V2),near(V2,V3).
+		Clause clause1 = chain(v1, v2, v2, v3);
+		// flies(V3):-near(V3,V1),near(V1,V2). sorts its literals the other way round
+		Clause clause2 = chain(v3, v1, v1, v2);
+		// flies(V1):-near(V1,V2),near(V1,V3).
+		Clause clause3 = chain(v1, v2, v1, v3);
+		assertEquals("Clause: variants must be equal whatever the names of their variables", clause1, clause2);
+		assertEquals("Clause: variants must hash equal whatever the names of their variables", clause1.hashCode(), clause2.hashCode());
+		assertFalse("Clause: clauses of the same shape must be told apart", clause1.equals(clause3));
+		assertFalse("Clause: clauses of the same shape should hash apart", clause1.hashCode() == clause3.hashCode());
+	}
+
+	@Test
+	public void testTiedVariables() {
+		Variable x = new Variable.Builder("X").build();
+		Variable y = new Variable.Builder("Y").build();
+		Variable z = new Variable.Builder("Z").build();
+		// h(X):-p(X,Y),p(X,Z),q(Y),r(Z).
+		Clause clause1 = tied(x, y, z, y, z);
+		// h(X):-p(X,Z),p(X,Y),q(Z),r(Y).
+		Clause clause2 = tied(x, z, y, z, y);
+		// h(X):-p(X,Y),p(X,Z),q(Y),r(Y).
+		Clause clause3 = tied(x, y, z, y, y);
+		assertTrue("Clause: variants with tied literals must be recognised", clause1.isVariant(clause2));
+		assertEquals("Clause: variants with tied literals must be equal", clause1, clause2);
+		assertEquals("Clause: variants with tied literals must hash equal", clause1.hashCode(), clause2.hashCode());
+		assertFalse("Clause: tied literals must be matched consistently", clause1.equals(clause3));
+	}
+
+	@Test
+	public void testDistinctLiterals() {
+		Clause clause = new Clause.Builder().addLiteral(literal1).addLiteral(literal2).addLiteral(literal3).build();
+		assertEquals("Clause: distinct literals must never be merged", 3, clause.getSize());
+	}
+
+	@Test
+	public void testOrdering() {
+		Clause clause1 = new Clause.Builder().addLiteral(literal1).addLiteral(literal2).addLiteral(literal3).build();
+		Clause clause2 = new Clause.Builder().addLiteral(literal3).addLiteral(literal2).addLiteral(literal1).build();
+		assertArrayEquals("Clause: body order must not depend on insertion order", clause1.getBody(), clause2.getBody());
+	}
+
+	@Test
+	public void testVariants() {
+		// flies(V1):-penguin(V1),not penguin(V2).
+		Clause clause1 = new Clause.Builder().setHead(new Atom.Builder(FLIES).addTerm(v1).build()) //
+				.addLiteral(literal1).addLiteral(literal2).build();
+		// flies(V2):-penguin(V2),not penguin(V1).
+		Clause clause2 = new Clause.Builder().setHead(new Atom.Builder(FLIES).addTerm(v2).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder(PENGUIN).addTerm(v2).build()).setLevel(1).build()) //
+				.addLiteral(new Literal.Builder(new Atom.Builder(PENGUIN).addTerm(v1).build()).setNegated(true).setLevel(1).build()).build();
+		// flies(V1):-penguin(V1),not penguin(V1).
+		Clause clause3 = new Clause.Builder().setHead(new Atom.Builder(FLIES).addTerm(v1).build()) //
+				.addLiteral(literal1) //
+				.addLiteral(new Literal.Builder(new Atom.Builder(PENGUIN).addTerm(v1).build()).setNegated(true).setLevel(1).build()).build();
+		assertTrue("Clause: variants must be recognised", clause1.isVariant(clause2));
+		assertEquals("Clause: variants must be equal", clause1, clause2);
+		assertEquals("Clause: variants must hash equal", clause1.hashCode(), clause2.hashCode());
+		assertFalse("Clause: renaming must be consistent", clause1.equals(clause3));
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import xhail.core.parser.Parser;
+
+/**
+ * @author stefano
+ *
+ */
+public class MatcherTest {
+
+	private static Set<Atom> facts;
+
+	private static Matcher holdsAt;
+
+	private static Matcher initiates;
+
+	private static Matcher label;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		facts = new HashSet<>();
+		for (String token : new String[] { "sugar(lactose)", "time(1)", "time(2)" })
+			facts.add(Parser.parseToken(token));
+		holdsAt = Parser.parseModeB("holdsAt(available(+sugar),-time)").getScheme().getMatcher();
+		initiates = Parser.parseModeB("initiates(add(+sugar),3)").getScheme().getMatcher();
+		label = Parser.parseModeB("label(+sugar,\"sweet\")").getScheme().getMatcher();
+	}
+
+	@Test
+	public void testFindSubstitutes() {
+		assertEquals("Matcher: inputs of nested atoms must be found", new HashSet<>(Arrays.asList(Parser.parseToken("lactose"))),
+				holdsAt.findSubstitutes(Parser.parseToken("holdsAt(available(lactose),1)")));
+		assertTrue("Matcher: nested atoms not fitting must be skipped",
+				holdsAt.findSubstitutes(Parser.parseToken("holdsAt(missing(lactose),1)")).isEmpty());
+		assertTrue("Matcher: atoms not fitting must have no inputs", holdsAt.findSubstitutes(Parser.parseToken("happens(lactose,1)")).isEmpty());
+	}
+
+	@Test
+	public void testMatch() {
+		Collection<Term> substitutes = Arrays.asList(Parser.parseToken("lactose"));
+		Collection<Term> outputs = new HashSet<>();
+		assertTrue("Matcher: atoms with usable inputs must match", holdsAt.match(Parser.parseToken("holdsAt(available(lactose),2)"), substitutes, outputs));
+		assertEquals("Matcher: outputs must be collected", new HashSet<>(Arrays.asList(new Number.Builder(2).build())), outputs);
+		assertFalse("Matcher: atoms with other inputs must not match",
+				holdsAt.match(Parser.parseToken("holdsAt(available(glucose),2)"), substitutes, null));
+		assertTrue("Matcher: inputs must be ignored without substitutes", holdsAt.match(Parser.parseToken("holdsAt(available(glucose),2)"), null, null));
+		assertTrue("Matcher: numbers must match by value", initiates.match(Parser.parseToken("initiates(add(lactose),3)"), substitutes, null));
+		assertFalse("Matcher: numbers must not match other values", initiates.match(Parser.parseToken("initiates(add(lactose),4)"), substitutes, null));
+		assertTrue("Matcher: quotations must match by content", label.match(Parser.parseToken("label(lactose,\"sweet\")"), substitutes, null));
+		assertFalse("Matcher: quotations must not match other contents", label.match(Parser.parseToken("label(lactose,\"sour\")"), substitutes, null));
+	}
+
+	@Test
+	public void testSubsumes() {
+		assertTrue("Matcher: typed atoms must be subsumed", holdsAt.subsumes(Parser.parseToken("holdsAt(available(lactose),1)"), facts));
+		assertFalse("Matcher: untyped atoms must not be subsumed", holdsAt.subsumes(Parser.parseToken("holdsAt(available(lactose),3)"), facts));
+	}
+
+}
@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import xhail.core.facts.Dictionary;
+import xhail.core.facts.FactStore;
+import xhail.core.parser.Parser;
+import xhail.core.statements.ModeB;
+import xhail.core.statements.ModeH;
+
+/**
+ * @author stefano
+ *
+ */
+public class SchemeTermTest {
+
+	private static final String[] ANSWER = { "time(0)", "time(1)", "time(2)", "sugar(lactose)", "sugar(glucose)", "fluent(available(lactose))",
+			"fluent(available(glucose))", "available(glucose)", "happens(use(lactose),1)", "holdsAt(available(lactose),0)",
+			"holdsAt(available(glucose),1)", "holdsAt(available(glucose),2)", "holdsAt(sugar,5)" };
+
+	private static Set<Atom> atoms;
+
+	private static ModeB[] modeBs;
+
+	private static ModeH[] modeHs;
+
+	private static FactStore store;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		atoms = new HashSet<>();
+		store = new FactStore(new Dictionary());
+		for (String token : ANSWER) {
+			atoms.add(Parser.parseToken(token));
+			store.add(Parser.parseToken(token));
+		}
+		modeHs = new ModeH[] { Parser.parseModeH("happens(use($sugar),+time)") };
+		modeBs = new ModeB[] { Parser.parseModeB("holdsAt($fluent,+time)"), Parser.parseModeB("not holdsAt($fluent,+time)") };
+	}
+
+	@Test
+	public void testSelect() {
+		Scheme holdsAt = modeBs[0].getScheme();
+		Map<SchemeTerm, Set<Atom>> table = SchemeTerm.lookup(modeHs, modeBs, store);
+		int position = SchemeTerm.findInput(holdsAt);
+		for (int time = 0; time <= 5; time++) {
+			Term term = new Number.Builder(time).build();
+			Set<Atom> expected = new HashSet<>();
+			for (Atom atom : table.get(holdsAt))
+				if (atom.getTerm(position).equals(term))
+					expected.add(atom);
+			assertEquals("SchemeTerm: selecting through the index must match scanning the part", expected,
+					new HashSet<>(SchemeTerm.select(holdsAt, table.get(holdsAt), store, position, term)));
+		}
+	}
+
+	@Test
+	public void testGenerate() {
+		Scheme holdsAt = modeBs[1].getScheme();
+		Map<SchemeTerm, Set<Atom>> table = SchemeTerm.lookup(modeHs, modeBs, store);
+		Collection<Term> substitutes = Arrays.asList(new Number.Builder(0).build(), new Number.Builder(1).build(), new Number.Builder(2).build());
+		Map<Atom, Collection<Term>> expected = SchemeTerm.generateAndOutput(holdsAt, substitutes, table, atoms);
+		Map<Atom, Collection<Term>> actual = SchemeTerm.generateAndOutput(holdsAt, substitutes, table, store);
+		assertEquals("SchemeTerm: generation must skip facts the same way", expected, actual);
+		assertEquals("SchemeTerm: generation must skip facts and duplicates", 3, actual.size());
+		assertFalse("SchemeTerm: generation must skip facts", actual.containsKey(Parser.parseToken("holdsAt(available(lactose),0)")));
+		Generator generator = new Generator(holdsAt, substitutes, table, store);
+		assertTrue("SchemeTerm: generation must be lazy", generator.hasNext());
+		generator.next();
+		assertTrue("SchemeTerm: generation must be resumable", generator.hasNext());
+	}
+
+	@Test
+	public void testLookup() {
+		Map<SchemeTerm, Set<Atom>> expected = SchemeTerm.lookup(modeHs, modeBs, atoms);
+		Map<SchemeTerm, Set<Atom>> actual = SchemeTerm.lookup(modeHs, modeBs, store);
+		assertEquals("SchemeTerm: indexed lookup must match the scan of all the facts", expected, actual);
+		Scheme holdsAt = modeBs[0].getScheme();
+		assertEquals("SchemeTerm: untyped atoms must not be subsumed", 3, actual.get(holdsAt).size());
+	}
+
+	@Test
+	public void testSubsumes() {
+		Scheme holdsAt = modeBs[0].getScheme();
+		Atom typed = Parser.parseToken("holdsAt(available(glucose),1)");
+		Atom untyped = Parser.parseToken("holdsAt(sugar,5)");
+		assertTrue("SchemeTerm: typed atoms must be subsumed", SchemeTerm.subsumes(holdsAt, typed, store));
+		assertEquals("SchemeTerm: indexed and scanned facts must agree", SchemeTerm.subsumes(holdsAt, typed, atoms),
+				SchemeTerm.subsumes(holdsAt, typed, store));
+		assertFalse("SchemeTerm: untyped atoms must not be subsumed", SchemeTerm.subsumes(holdsAt, untyped, store));
+	}
+
+}
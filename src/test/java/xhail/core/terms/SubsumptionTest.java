@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import xhail.core.terms.Placemarker.Type;
+
+/**
+ * @author stefano
+ *
+ */
+public class SubsumptionTest {
+
+	private static Variable v1;
+
+	private static Variable v2;
+
+	private static Variable v3;
+
+	private static Atom atom(String identifier, Term... terms) {
+		return new Atom.Builder(identifier).addTerms(terms).build();
+	}
+
+	private static Clause clause(Atom head, Literal... body) {
+		Clause.Builder builder = new Clause.Builder().setHead(head);
+		for (Literal literal : body)
+			builder.addLiteral(literal);
+		return builder.build();
+	}
+
+	private static Literal literal(int level, Atom atom) {
+		return new Literal.Builder(atom).setLevel(level).build();
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Placemarker bird = new Placemarker.Builder("bird").setType(Type.INPUT).build();
+		v1 = new Variable.Builder("V1").setType(bird).build();
+		v2 = new Variable.Builder("V2").setType(bird).build();
+		v3 = new Variable.Builder("V3").setType(bird).build();
+	}
+
+	@Test
+	public void testCompact() {
+		// flies(V1):-near(V1,V2). is part of flies(V2):-near(V2,V3),penguin(V3).
+		Clause part = clause(atom("flies", v1), literal(1, atom("near", v1, v2)));
+		Clause whole = clause(atom("flies", v2), literal(1, atom("near", v2, v3)), literal(1, atom("penguin", v3)));
+		Clause other = clause(atom("flies", v1), literal(1, atom("penguin", v1)));
+		Map<Clause, Integer> supports = new LinkedHashMap<>();
+		supports.put(part, 2);
+		supports.put(whole, 1);
+		supports.put(other, 1);
+		Map<Clause, Integer> result = Subsumption.compact(supports);
+		assertEquals("Subsumption: parts must be dropped", 2, result.size());
+		assertEquals("Subsumption: support must go to the larger clause", Integer.valueOf(3), result.get(whole));
+		assertEquals("Subsumption: other clauses must be left alone", Integer.valueOf(1), result.get(other));
+	}
+
+	@Test
+	public void testEmbeds() {
+		Clause part = clause(atom("flies", v1), literal(1, atom("near", v1, v2)));
+		assertTrue("Subsumption: renamed parts must be found",
+				Subsumption.embeds(part, clause(atom("flies", v2), literal(1, atom("near", v2, v3)), literal(1, atom("penguin", v3)))));
+		assertFalse("Subsumption: variables must not be merged", Subsumption.embeds(part, clause(atom("flies", v1), literal(1, atom("near", v1, v1)))));
+		assertFalse("Subsumption: levels must agree", Subsumption.embeds(part, clause(atom("flies", v1), literal(2, atom("near", v1, v2)))));
+	}
+
+	@Test
+	public void testReduce() {
+		Clause clause = clause(atom("flies", v1), literal(1, atom("near", v1, v2)), literal(2, atom("near", v1, v2)), literal(1, atom("penguin", v2)));
+		assertEquals("Subsumption: repeated literals of the last level must be removed", 2, Subsumption.reduce(clause).getSize());
+		clause = clause(atom("flies", v1), literal(1, atom("near", v1, v2)), literal(2, atom("near", v1, v2)), literal(3, atom("penguin", v2)));
+		assertEquals("Subsumption: repeated literals below the last level must be kept", 3, Subsumption.reduce(clause).getSize());
+	}
+
+}
@@ -0,0 +1,66 @@
+/**
+ *
+ */
+package xhail.core.terms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author stefano
+ *
+ */
+public class TermTest {
+
+	private static Atom available1;
+
+	private static Atom available2;
+
+	private static Atom glucose;
+
+	private static Atom lactose;
+
+	private static Number one;
+
+	private static Quotation quotation;
+
+	private static Variable variable;
+
+	private static Number zero;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		zero = new Number.Builder(0).build();
+		one = new Number.Builder(1).build();
+		glucose = new Atom.Builder("glucose").build();
+		lactose = new Atom.Builder("lactose").build();
+		available1 = new Atom.Builder("available").addTerm(glucose).addTerm(one).build();
+		available2 = new Atom.Builder("available").addTerm(lactose).addTerm(zero).build();
+		quotation = new Quotation.Builder("\"C00025\"").build();
+		variable = new Variable.Builder("V1").build();
+	}
+
+	@Test
+	public void testConsistency() {
+		assertEquals("Term: equal terms must compare equal", 0, Term.compare(available1, new Atom.Builder(available1).build()));
+		assertTrue("Term: order must be antisymmetric", Term.compare(available1, available2) < 0 && Term.compare(available2, available1) > 0);
+	}
+
+	@Test
+	public void testOrder() {
+		Term[] terms = { variable, available2, quotation, lactose, one, available1, glucose, zero };
+		Term[] expected = { zero, one, available1, available2, glucose, lactose, quotation, variable };
+		Arrays.sort(terms, Term.ORDER);
+		assertArrayEquals("Term: numbers, compound terms, quotations and variables must be sorted structurally", expected, terms);
+	}
+
+}